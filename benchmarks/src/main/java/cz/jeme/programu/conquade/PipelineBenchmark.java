@@ -0,0 +1,305 @@
+package cz.jeme.programu.conquade;
+
+import cz.jeme.programu.conquade.benchmarks.Frames;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A headless end-to-end benchmark of the render → .cqd → play pipeline.
+ * <p>The frames of a synthetic video (see {@link Frames#movingFrame(int, int, long, Random, byte[])}) are converted
+ * and written by {@link Renderer#writeFrames(Renderer.FrameSource, VideoWriter, ExecutorService, int, Renderer.FrameListener)}
+ * and packed into a .cqd file by {@link Renderer#pack(File, File, File, File)}, then the file is played
+ * by {@link Player#playFrames(Player.PlayArgs, VideoReader, FrameEncoder, FrameSink, PlaybackClock, PlaybackStats, java.util.function.Supplier)}
+ * into a counting {@link FrameSink} with an unpaced clock (see {@link PlaybackClock#unpaced(int)}), without ffmpeg,
+ * a terminal or the real-time pacing. So the measured render and playback are the ones of Conquade, including
+ * the render worker pool, the frame producer and ring, and the packing and opening of the .cqd file.</p>
+ * <p>It lives in the Conquade package to reach the package-private render and playback steps.</p>
+ * <p>Usage: {@code java -cp target/benchmarks.jar cz.jeme.programu.conquade.PipelineBenchmark [options]}</p>
+ * <ul>
+ *     <li>{@code -size <width>x<height>} - the size of the frames (default: {@code 200x60})</li>
+ *     <li>{@code -frames <frames>} - the number of measured frames (default: {@code 2000})</li>
+ *     <li>{@code -warmup <frames>} - the number of frames run through the pipeline before measuring (default: {@code 500})</li>
+ *     <li>{@code -threads <number>} - the number of threads converting frames (default: number of CPU cores)</li>
+ *     <li>{@code -256} - render a 256 color video</li>
+ *     <li>{@code -color <target>} - the color target (default: {@code text_only})</li>
+ *     <li>{@code -delta [frames]} - print only the changed cells, redraw every {@code frames} frames</li>
+ *     <li>{@code -compress [level]} - compress the video data</li>
+ *     <li>{@code -bake} - bake the frames for the color target when rendering</li>
+ *     <li>{@code -sync} - wrap the frames in synchronized updates</li>
+ *     <li>{@code -buffer <frames>} - the number of frames read and encoded ahead of the playback (default: {@code 8})</li>
+ * </ul>
+ */
+public final class PipelineBenchmark {
+    private static final int FPS = 30;
+
+    private int width = 200;
+    private int height = 60;
+    private int frames = 2000;
+    private int warmupFrames = 500;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean trueColor = true;
+    private @NotNull Player.ColorTarget colorTarget = Player.ColorTarget.TEXT_ONLY;
+    private boolean delta = false;
+    private int redrawInterval = Player.DEFAULT_REDRAW_INTERVAL;
+    private int compressionLevel = 0;
+    private boolean bake = false;
+    private boolean synchronizedOutput = false;
+    private int bufferSize = Player.DEFAULT_BUFFER_SIZE;
+
+    private PipelineBenchmark(final String @NotNull [] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            final String value = i + 1 < args.length && !args[i + 1].startsWith("-") ? args[i + 1] : null;
+            final boolean valueUsed = switch (arg) {
+                case "-size" -> {
+                    final String size = require(arg, value);
+                    width = Frames.width(size);
+                    height = Frames.height(size);
+                    yield true;
+                }
+                case "-frames" -> {
+                    frames = Integer.parseInt(require(arg, value));
+                    yield true;
+                }
+                case "-warmup" -> {
+                    warmupFrames = Integer.parseInt(require(arg, value));
+                    yield true;
+                }
+                case "-threads" -> {
+                    threads = Integer.parseInt(require(arg, value));
+                    yield true;
+                }
+                case "-256" -> {
+                    trueColor = false;
+                    yield false;
+                }
+                case "-color" -> {
+                    colorTarget = Player.ColorTarget.valueOf(require(arg, value).toUpperCase());
+                    yield true;
+                }
+                case "-delta" -> {
+                    delta = true;
+                    redrawInterval = Player.parseRedrawInterval(value);
+                    yield value != null;
+                }
+                case "-compress" -> {
+                    compressionLevel = value == null ? Renderer.DEFAULT_COMPRESSION_LEVEL : Integer.parseInt(value);
+                    yield value != null;
+                }
+                case "-bake" -> {
+                    bake = true;
+                    yield false;
+                }
+                case "-sync" -> {
+                    synchronizedOutput = true;
+                    yield false;
+                }
+                case "-buffer" -> {
+                    bufferSize = Integer.parseInt(require(arg, value));
+                    yield true;
+                }
+                default -> throw new IllegalArgumentException("\"%s\" is not a valid argument!".formatted(arg));
+            };
+            if (valueUsed) i++;
+        }
+        if (width < 1 || height < 1 || frames < 1 || warmupFrames < 0 || threads < 1 || bufferSize < 1
+                || compressionLevel < 0 || compressionLevel > 9)
+            throw new IllegalArgumentException("Benchmark arguments are not valid!");
+    }
+
+    private static @NotNull String require(final @NotNull String arg, final @Nullable String value) {
+        if (value == null)
+            throw new IllegalArgumentException("Missing value of the %s argument!".formatted(arg));
+        return value;
+    }
+
+    public static void main(final String @NotNull [] args) throws IOException {
+        final PipelineBenchmark benchmark = new PipelineBenchmark(args);
+        if (benchmark.warmupFrames > 0)
+            benchmark.run(benchmark.warmupFrames); // let the JIT compile the pipeline first
+        benchmark.run(benchmark.frames).print(benchmark);
+    }
+
+    private @NotNull Report run(final int frameCount) throws IOException {
+        final File tmpDir = Files.createTempDirectory("conquade-pipeline").toFile();
+        try {
+            final File cqdFile = new File(tmpDir, "pipeline" + Conquade.FILE_EXTENSION);
+            final Report report = new Report(frameCount);
+            render(tmpDir, cqdFile, frameCount, report);
+            report.cqdBytes = cqdFile.length();
+            play(cqdFile, report);
+            return report;
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    private void render(final @NotNull File tmpDir, final @NotNull File cqdFile, final int frameCount,
+                        final @NotNull Report report) throws IOException {
+        final File videoFile = new File(tmpDir, Conquade.VIDEO_ENTRY);
+        final File audioFile = new File(tmpDir, Conquade.AUDIO_ENTRY); // never created, the video has no audio
+        final File indexFile = new File(tmpDir, Conquade.INDEX_ENTRY);
+        final Random random = new Random(42); // the same video every run
+
+        final long renderStart = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(videoFile)))) {
+            final VideoWriter videoWriter = new VideoWriter(dos, new VideoHeader(
+                    FPS,
+                    width,
+                    height,
+                    trueColor,
+                    FPS * 10,
+                    compressionLevel == 0 ? VideoHeader.COMPRESSION_NONE : VideoHeader.COMPRESSION_DEFLATE,
+                    bake ? colorTarget : null
+            ), compressionLevel);
+            final long[] frameId = {0};
+            Renderer.INSTANCE.writeFrames(rgbFrame -> {
+                if (frameId[0] == frameCount) return false;
+                Frames.movingFrame(width, height, frameId[0]++, random, rgbFrame);
+                return true;
+            }, videoWriter, executor, threads, (writtenFrames, convertNanos, writeNanos) -> {
+                report.convert.record(convertNanos);
+                report.write.record(writeNanos);
+            });
+            Renderer.INSTANCE.writeIndex(videoWriter.getIndex(), indexFile);
+        } finally {
+            executor.shutdownNow();
+        }
+        Renderer.INSTANCE.pack(cqdFile, videoFile, audioFile, indexFile);
+        report.renderNanos = System.nanoTime() - renderStart;
+    }
+
+    private void play(final @NotNull File cqdFile, final @NotNull Report report) {
+        final List<String> playArgs = new ArrayList<>(List.of(
+                "play",
+                "-i", cqdFile.getAbsolutePath(),
+                "-noaudio",
+                "-nores",
+                "-color", colorTarget.name().toLowerCase(),
+                "-buffer", String.valueOf(bufferSize)
+        ));
+        if (delta) playArgs.addAll(List.of("-delta", String.valueOf(redrawInterval)));
+        if (synchronizedOutput) playArgs.add("-sync");
+        final Player.PlayArgs args = new Player.PlayArgs(new ConquadeArgs(playArgs.toArray(String[]::new)));
+
+        final CountingChannel output = new CountingChannel();
+        final FrameSink frameSink = new FrameSink(output, synchronizedOutput);
+
+        final long playStart = System.nanoTime();
+        Player.INSTANCE.open(args, (videoReader, audio) -> {
+            final VideoHeader header = videoReader.getHeader();
+            final PlaybackClock clock = PlaybackClock.unpaced(header.getFps());
+            final PlaybackStats stats = new PlaybackStats(header.getWidth(), header.getHeight(), header.getFps(), clock);
+            try {
+                Player.INSTANCE.playFrames(args, videoReader, Player.INSTANCE.createEncoder(args, header),
+                        frameSink, clock, stats, () -> Player.Control.NONE);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Playback interrupted!", e);
+            }
+            report.playStats = stats;
+        });
+        report.playNanos = System.nanoTime() - playStart;
+        report.outputBytes = output.bytes;
+    }
+
+    private static void printStage(final @NotNull String name, final @NotNull LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        System.out.printf("  %-8s %12.1f FPS   p50 %9.1f us   p99 %9.1f us%n",
+                name,
+                histogram.getCount() / (histogram.getSum() / 1e9),
+                histogram.getPercentile(0.5) / 1e3,
+                histogram.getPercentile(0.99) / 1e3
+        );
+    }
+
+    /**
+     * The measurements of one pipeline run.
+     */
+    private static final class Report {
+        private final int frameCount;
+        private final @NotNull LatencyHistogram convert = new LatencyHistogram();
+        private final @NotNull LatencyHistogram write = new LatencyHistogram();
+        private @Nullable PlaybackStats playStats;
+        private long renderNanos;
+        private long playNanos;
+        private long cqdBytes;
+        private long outputBytes;
+
+        private Report(final int frameCount) {
+            this.frameCount = frameCount;
+        }
+
+        private void print(final @NotNull PipelineBenchmark benchmark) {
+            System.out.printf("Pipeline %dx%d, %s, %s%s%s%s, %d frames, %d threads%n",
+                    benchmark.width,
+                    benchmark.height,
+                    benchmark.trueColor ? "true color" : "256 colors",
+                    benchmark.colorTarget,
+                    benchmark.delta ? ", delta" : "",
+                    benchmark.compressionLevel == 0 ? "" : ", compression " + benchmark.compressionLevel,
+                    benchmark.bake ? ", baked" : "",
+                    frameCount,
+                    benchmark.threads
+            );
+            System.out.printf("render %16.1f FPS   %.1f B/frame in the .cqd file%n",
+                    frameCount / (renderNanos / 1e9), cqdBytes / (double) frameCount);
+            printStage("convert", convert);
+            printStage("write", write);
+            System.out.printf("play %18.1f FPS   %.1f B/frame emitted%n",
+                    frameCount / (playNanos / 1e9), outputBytes / (double) frameCount);
+            if (playStats == null) return;
+            printStage("read", playStats.getStage(PlaybackStats.Stage.READ));
+            printStage("encode", playStats.getStage(PlaybackStats.Stage.ENCODE));
+            printStage("output", playStats.getStage(PlaybackStats.Stage.WRITE));
+        }
+    }
+
+    /**
+     * A channel counting the bytes written to it instead of writing them anywhere.
+     */
+    private static final class CountingChannel implements GatheringByteChannel {
+        private long bytes = 0;
+
+        @Override
+        public long write(final ByteBuffer @NotNull [] srcs, final int offset, final int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++)
+                written += write(srcs[i]);
+            return written;
+        }
+
+        @Override
+        public long write(final ByteBuffer @NotNull [] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(final @NotNull ByteBuffer src) {
+            final int written = src.remaining();
+            src.position(src.limit());
+            bytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package cz.jeme.programu.conquade.benchmarks;
+
+import cz.jeme.programu.conquade.AnsiChar;
+import cz.jeme.programu.conquade.AnsiHelper;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per cell ANSI helpers, {@link AnsiHelper#toAnsi256(int, int, int)} and the {@link AnsiChar} builders,
+ * over the cells of one 200×60 frame per invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AnsiBenchmark {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 60;
+
+    private byte @NotNull [] rgbFrame;
+
+    @Setup
+    public void setup() {
+        rgbFrame = Frames.rgbFrame(WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public void toAnsi256(final @NotNull Blackhole blackhole) {
+        for (int i = 0; i < WIDTH * HEIGHT; i++)
+            blackhole.consume(AnsiHelper.toAnsi256(rgbFrame[3 * i] & 0xFF, rgbFrame[3 * i + 1] & 0xFF, rgbFrame[3 * i + 2] & 0xFF));
+    }
+
+    @Benchmark
+    public void literal256(final @NotNull Blackhole blackhole) {
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            final int color = AnsiHelper.toAnsi256(rgbFrame[3 * i] & 0xFF, rgbFrame[3 * i + 1] & 0xFF, rgbFrame[3 * i + 2] & 0xFF);
+            blackhole.consume(AnsiChar.literal256('#', color, color));
+        }
+    }
+
+    @Benchmark
+    public void literalRGB(final @NotNull Blackhole blackhole) {
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            final int red = rgbFrame[3 * i] & 0xFF;
+            final int green = rgbFrame[3 * i + 1] & 0xFF;
+            final int blue = rgbFrame[3 * i + 2] & 0xFF;
+            blackhole.consume(AnsiChar.literalRGB('#', red, green, blue, red, green, blue));
+        }
+    }
+}
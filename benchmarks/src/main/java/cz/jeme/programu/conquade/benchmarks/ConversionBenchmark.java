@@ -0,0 +1,64 @@
+package cz.jeme.programu.conquade.benchmarks;
+
+import cz.jeme.programu.conquade.Renderer;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of raw RGB frames into video frame data ({@link Renderer#renderFrameRGB(byte[], int, int, byte[])}
+ * and {@link Renderer#renderFrame256(byte[], int, int, byte[])}) and of decoded images.
+ * <p>Run with {@code -jvmArgsAppend "--add-modules jdk.incubator.vector"} to measure the Vector API conversion.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+    @Param({"80x24", "200x60", "400x120"})
+    public @NotNull String size;
+
+    private int width;
+    private int height;
+    private byte @NotNull [] rgbFrame;
+    private byte @NotNull [] data;
+    private @NotNull BufferedImage image;
+
+    @Setup
+    public void setup() {
+        width = Frames.width(size);
+        height = Frames.height(size);
+        rgbFrame = Frames.rgbFrame(width, height);
+        data = new byte[width * height * 4];
+        image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR); // as decoded by ImageIO
+        for (int i = 0; i < width * height; i++)
+            image.setRGB(i % width, i / width,
+                    (rgbFrame[3 * i] & 0xFF) << 16 | (rgbFrame[3 * i + 1] & 0xFF) << 8 | rgbFrame[3 * i + 2] & 0xFF);
+    }
+
+    @Benchmark
+    public byte @NotNull [] renderFrameRGB() {
+        Renderer.INSTANCE.renderFrameRGB(rgbFrame, width, height, data);
+        return data;
+    }
+
+    @Benchmark
+    public byte @NotNull [] renderFrame256() {
+        Renderer.INSTANCE.renderFrame256(rgbFrame, width, height, data);
+        return data;
+    }
+
+    @Benchmark
+    public byte @NotNull [] renderImageRGB() {
+        return Renderer.INSTANCE.renderFrameRGB(image);
+    }
+
+    @Benchmark
+    public byte @NotNull [] renderImage256() {
+        return Renderer.INSTANCE.renderFrame256(image);
+    }
+}
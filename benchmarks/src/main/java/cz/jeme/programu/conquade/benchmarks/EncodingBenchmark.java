@@ -0,0 +1,71 @@
+package cz.jeme.programu.conquade.benchmarks;
+
+import cz.jeme.programu.conquade.AnsiBuffer;
+import cz.jeme.programu.conquade.FrameEncoder;
+import cz.jeme.programu.conquade.Player;
+import cz.jeme.programu.conquade.Renderer;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding of video frame data into the terminal output for every {@link Player.ColorTarget},
+ * both through the reused {@link FrameEncoder} of the playback and the String returning
+ * {@link Player#readFrameRGB(byte[], int, int, Player.ColorTarget)} and
+ * {@link Player#readFrame256(byte[], int, int, Player.ColorTarget)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodingBenchmark {
+    @Param({"80x24", "200x60", "400x120"})
+    public @NotNull String size;
+
+    @Param
+    public @NotNull Player.ColorTarget colorTarget;
+
+    private int width;
+    private int height;
+    private byte @NotNull [] dataRGB;
+    private byte @NotNull [] data256;
+    private @NotNull FrameEncoder encoderRGB;
+    private @NotNull FrameEncoder encoder256;
+    private final @NotNull AnsiBuffer frame = new AnsiBuffer();
+
+    @Setup
+    public void setup() {
+        width = Frames.width(size);
+        height = Frames.height(size);
+        final byte[] rgbFrame = Frames.rgbFrame(width, height);
+        dataRGB = Renderer.INSTANCE.renderFrameRGB(rgbFrame, width, height);
+        data256 = Renderer.INSTANCE.renderFrame256(rgbFrame, width, height);
+        encoderRGB = new FrameEncoder(width, height, true, colorTarget);
+        encoder256 = new FrameEncoder(width, height, false, colorTarget);
+    }
+
+    @Benchmark
+    public @NotNull AnsiBuffer encodeRGB() {
+        encoderRGB.encodeFrame(dataRGB, frame.clear());
+        return frame;
+    }
+
+    @Benchmark
+    public @NotNull AnsiBuffer encode256() {
+        encoder256.encodeFrame(data256, frame.clear());
+        return frame;
+    }
+
+    @Benchmark
+    public @NotNull String readFrameRGB() {
+        return Player.INSTANCE.readFrameRGB(dataRGB, width, height, colorTarget);
+    }
+
+    @Benchmark
+    public @NotNull String readFrame256() {
+        return Player.INSTANCE.readFrame256(data256, width, height, colorTarget);
+    }
+}
@@ -0,0 +1,98 @@
+package cz.jeme.programu.conquade.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Synthetic frames shared by the benchmarks.
+ */
+public final class Frames {
+    private Frames() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the width of a terminal size written as {@code width}x{@code height}.
+     *
+     * @param size the terminal size
+     * @return the width
+     */
+    public static int width(final @NotNull String size) {
+        return Integer.parseInt(size.substring(0, size.indexOf('x')));
+    }
+
+    /**
+     * Returns the height of a terminal size written as {@code width}x{@code height}.
+     *
+     * @param size the terminal size
+     * @return the height
+     */
+    public static int height(final @NotNull String size) {
+        return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+    }
+
+    /**
+     * Returns a raw RGB frame (3 bytes per pixel) of smooth gradients with some noise, so neighbouring cells are
+     * similar like in a real video, but the colors still vary across the whole range.
+     *
+     * @param width  the width of the frame
+     * @param height the height of the frame
+     * @return the raw RGB frame
+     */
+    public static byte @NotNull [] rgbFrame(final int width, final int height) {
+        final Random random = new Random(42); // the same frame every run
+        final byte[] frame = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int pixel = 3 * (y * width + x);
+                frame[pixel] = (byte) Math.min(255, x * 255 / width + random.nextInt(16));
+                frame[pixel + 1] = (byte) Math.min(255, y * 255 / height + random.nextInt(16));
+                frame[pixel + 2] = (byte) Math.min(255, (x + y) * 255 / (width + height) + random.nextInt(16));
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Writes the next frame of a synthetic video into a raw RGB frame (3 bytes per pixel): a diagonal gradient
+     * moving one cell every few frames with a bouncing box of noise, so only a part of the cells changes
+     * between most of the frames like in a real video.
+     *
+     * @param width   the width of the frame
+     * @param height  the height of the frame
+     * @param frameId the id of the frame
+     * @param random  the source of the noise
+     * @param frame   the array to write the raw RGB frame to, must be at least width × height × 3 long
+     */
+    public static void movingFrame(final int width, final int height, final long frameId, final @NotNull Random random,
+                                   final byte @NotNull [] frame) {
+        final int shift = (int) (frameId / 4);
+        final int boxWidth = Math.max(1, width / 4);
+        final int boxHeight = Math.max(1, height / 4);
+        final int boxX = bounce(frameId, width - boxWidth);
+        final int boxY = bounce(frameId, height - boxHeight);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int pixel = 3 * (y * width + x);
+                if (x >= boxX && x < boxX + boxWidth && y >= boxY && y < boxY + boxHeight) {
+                    final int noise = random.nextInt();
+                    frame[pixel] = (byte) noise;
+                    frame[pixel + 1] = (byte) (noise >> 8);
+                    frame[pixel + 2] = (byte) (noise >> 16);
+                } else {
+                    final int gradient = (x + y + shift) % (width + height);
+                    frame[pixel] = (byte) (gradient * 255 / (width + height));
+                    frame[pixel + 1] = (byte) (y * 255 / height);
+                    frame[pixel + 2] = (byte) (255 - gradient * 255 / (width + height));
+                }
+            }
+        }
+    }
+
+    private static int bounce(final long frameId, final int range) {
+        if (range <= 0) return 0;
+        final int position = (int) (frameId % (2L * range));
+        return position < range ? position : 2 * range - position;
+    }
+}
@@ -0,0 +1,305 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable byte buffer for building UTF-8 encoded ANSI output without allocating per character.
+ * <p>All escape sequences are copied from precomputed tables, the buffer only grows when it is too small.</p>
+ */
+public final class AnsiBuffer {
+    private static final byte ESC = (byte) AnsiHelper.ESC;
+    private static final byte @NotNull [] @NotNull [] DECIMALS = new byte[256][];
+    private static final byte @NotNull [] @NotNull [] FOREGROUNDS_256 = new byte[256][];
+    private static final byte @NotNull [] @NotNull [] BACKGROUNDS_256 = new byte[256][];
+    private static final byte @NotNull [] FOREGROUND_RGB_PREFIX = (AnsiHelper.ESC + "[38;2;").getBytes(StandardCharsets.UTF_8);
+    private static final byte @NotNull [] BACKGROUND_RGB_PREFIX = (AnsiHelper.ESC + "[48;2;").getBytes(StandardCharsets.UTF_8);
+    private static final byte @NotNull [] RESET = AnsiHelper.RESET.getBytes(StandardCharsets.UTF_8);
+    private static final byte @NotNull [] @NotNull [] GLYPHS = new byte[Conquade.CHARACTERS_ARRAY.length][];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            DECIMALS[i] = Integer.toString(i).getBytes(StandardCharsets.UTF_8);
+            FOREGROUNDS_256[i] = AnsiHelper.foregroundColor256(i).getBytes(StandardCharsets.UTF_8);
+            BACKGROUNDS_256[i] = AnsiHelper.backgroundColor256(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < GLYPHS.length; i++)
+            GLYPHS[i] = String.valueOf(Conquade.CHARACTERS_ARRAY[i]).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte @NotNull [] bytes;
+    private int length = 0;
+    private @Nullable ByteBuffer byteBuffer; // wraps bytes, replaced only when the buffer grows
+
+    /**
+     * Creates a new empty {@link AnsiBuffer}.
+     *
+     * @param capacity the initial capacity in bytes
+     */
+    public AnsiBuffer(final int capacity) {
+        bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Creates a new empty {@link AnsiBuffer} with a default capacity.
+     */
+    public AnsiBuffer() {
+        this(1024);
+    }
+
+    private void ensureCapacity(final int additional) {
+        final int required = length + additional;
+        if (required > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+    }
+
+    /**
+     * Removes all the bytes from this buffer, keeping its capacity.
+     *
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer clear() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Appends a single byte.
+     *
+     * @param b the byte to append
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer append(final byte b) {
+        ensureCapacity(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    /**
+     * Appends a single ASCII character.
+     *
+     * @param c the character to append, must be in ASCII
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer append(final char c) {
+        return append((byte) c);
+    }
+
+    /**
+     * Appends all the provided bytes.
+     *
+     * @param b the bytes to append
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer append(final byte @NotNull [] b) {
+        return append(b, 0, b.length);
+    }
+
+    /**
+     * Appends a range of the provided bytes.
+     *
+     * @param b      the bytes to append
+     * @param offset the index of the first byte to append
+     * @param len    the number of bytes to append
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer append(final byte @NotNull [] b, final int offset, final int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, offset, bytes, length, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Appends bytes read from an input.
+     *
+     * @param in  the input to read from
+     * @param len the number of bytes to read and append
+     * @return this buffer
+     * @throws IOException when the bytes could not be read
+     */
+    public @NotNull AnsiBuffer append(final @NotNull DataInput in, final int len) throws IOException {
+        ensureCapacity(len);
+        in.readFully(bytes, length, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Appends a non-negative number in decimal notation.
+     *
+     * @param number the number to append
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendDecimal(final int number) {
+        if (number < 256) return append(DECIMALS[number]);
+        int digits = 1;
+        for (int n = number / 10; n > 0; n /= 10) digits++;
+        ensureCapacity(digits);
+        int n = number;
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Appends a rendering character.
+     *
+     * @param index the index of the character in {@link Conquade#CHARACTERS}
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendGlyph(final int index) {
+        return append(GLYPHS[index]);
+    }
+
+    /**
+     * Appends an ANSI code to switch the font color (see {@link AnsiHelper#foregroundColor256(int)}).
+     *
+     * @param ansiColor the ANSI color to use
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendForeground256(final int ansiColor) {
+        return append(FOREGROUNDS_256[ansiColor]);
+    }
+
+    /**
+     * Appends an ANSI code to switch the background color (see {@link AnsiHelper#backgroundColor256(int)}).
+     *
+     * @param ansiColor the ANSI color to use
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendBackground256(final int ansiColor) {
+        return append(BACKGROUNDS_256[ansiColor]);
+    }
+
+    /**
+     * Appends an ANSI code to switch the font color (see {@link AnsiHelper#foregroundColorRGB(int, int, int)}).
+     *
+     * @param red   the red RGB color channel value
+     * @param green the green RGB color channel value
+     * @param blue  the blue RGB color channel value
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendForegroundRGB(final int red, final int green, final int blue) {
+        return append(FOREGROUND_RGB_PREFIX).appendRGB(red, green, blue);
+    }
+
+    /**
+     * Appends an ANSI code to switch the background color (see {@link AnsiHelper#backgroundColorRGB(int, int, int)}).
+     *
+     * @param red   the red RGB color channel value
+     * @param green the green RGB color channel value
+     * @param blue  the blue RGB color channel value
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendBackgroundRGB(final int red, final int green, final int blue) {
+        return append(BACKGROUND_RGB_PREFIX).appendRGB(red, green, blue);
+    }
+
+    private @NotNull AnsiBuffer appendRGB(final int red, final int green, final int blue) {
+        return append(DECIMALS[red]).append(';')
+                .append(DECIMALS[green]).append(';')
+                .append(DECIMALS[blue]).append('m');
+    }
+
+    /**
+     * Appends {@link AnsiHelper#RESET}.
+     *
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendReset() {
+        return append(RESET);
+    }
+
+    /**
+     * Appends an ANSI code to move the cursor up (see {@link AnsiHelper#moveCursorUp(int)}).
+     *
+     * @param lines how many lines up should the cursor move
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendCursorUp(final int lines) {
+        return append(ESC).append('[').appendDecimal(lines).append('A');
+    }
+
+    /**
+     * Appends an ANSI code to move the cursor down (see {@link AnsiHelper#moveCursorDown(int)}).
+     *
+     * @param lines how many lines down should the cursor move
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendCursorDown(final int lines) {
+        return append(ESC).append('[').appendDecimal(lines).append('B');
+    }
+
+    /**
+     * Appends an ANSI code to move the cursor forward (right).
+     *
+     * @param columns how many columns forward should the cursor move
+     * @return this buffer
+     */
+    public @NotNull AnsiBuffer appendCursorForward(final int columns) {
+        return append(ESC).append('[').appendDecimal(columns).append('C');
+    }
+
+    /**
+     * Returns the number of bytes in this buffer.
+     *
+     * @return the length of this buffer
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the backing array of this buffer. Only the first {@link AnsiBuffer#length()} bytes are valid.
+     *
+     * @return the backing array
+     */
+    public byte @NotNull [] array() {
+        return bytes;
+    }
+
+    /**
+     * Returns the content of this buffer as a {@link ByteBuffer} from position 0 to {@link AnsiBuffer#length()}.
+     * <p>The same {@link ByteBuffer} wrapping the backing array is returned every time until this buffer grows,
+     * so it can be written to a channel for every frame without allocating.</p>
+     *
+     * @return the content of this buffer, valid until this buffer is changed
+     */
+    public @NotNull ByteBuffer byteBuffer() {
+        ByteBuffer byteBuffer = this.byteBuffer;
+        if (byteBuffer == null || byteBuffer.array() != bytes) // the buffer grew
+            this.byteBuffer = byteBuffer = ByteBuffer.wrap(bytes);
+        return byteBuffer.limit(length).rewind();
+    }
+
+    /**
+     * Writes the content of this buffer to an output stream.
+     *
+     * @param out the stream to write to
+     * @throws IOException when the bytes could not be written
+     */
+    public void writeTo(final @NotNull OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Decodes the content of this buffer as UTF-8.
+     *
+     * @return the content of this buffer
+     */
+    @Override
+    public @NotNull String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
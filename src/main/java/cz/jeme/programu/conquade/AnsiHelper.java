@@ -11,6 +11,15 @@ public final class AnsiHelper {
      * Escape character.
      */
     public static final char ESC = (char) 27;
+    /**
+     * The ANSI 256 color cube level (0 - 5) of every color channel value, so colors are converted with table lookups.
+     */
+    private static final byte @NotNull [] CUBE_LEVELS = new byte[256];
+
+    static {
+        for (int i = 0; i < CUBE_LEVELS.length; i++)
+            CUBE_LEVELS[i] = (byte) Math.round(i / 255D * 5);
+    }
 
     private AnsiHelper() {
         throw new AssertionError();
@@ -19,17 +28,14 @@ public final class AnsiHelper {
     /**
      * Transforms rgb color provided as three separate int color channel values to ANSI color.
      *
-     * @param red   the red channel color value
-     * @param green the green channel color value
-     * @param blue  the blue channel color value
+     * @param red   the red channel color value (0 - 255)
+     * @param green the green channel color value (0 - 255)
+     * @param blue  the blue channel color value (0 - 255)
      * @return transformed ANSI color
      */
     @Range(from = 16, to = 255)
     public static int toAnsi256(final int red, final int green, final int blue) {
-        return (int) (16
-                + 36 * Math.round(red / 255D * 5)
-                + 6 * Math.round(green / 255D * 5)
-                + Math.round(blue / 255D * 5));
+        return 16 + 36 * CUBE_LEVELS[red] + 6 * CUBE_LEVELS[green] + CUBE_LEVELS[blue];
     }
 
 
@@ -93,6 +99,14 @@ public final class AnsiHelper {
      * A code to reset font color, background color and font weight.
      */
     public static final @NotNull String RESET = ESC + "[0m";
+    /**
+     * A code to start a synchronized update, the terminal does not redraw until the update ends.
+     */
+    public static final @NotNull String BEGIN_SYNCHRONIZED_UPDATE = ESC + "[?2026h";
+    /**
+     * A code to end a synchronized update.
+     */
+    public static final @NotNull String END_SYNCHRONIZED_UPDATE = ESC + "[?2026l";
 
     /**
      * Returns a code to move the cursor up.
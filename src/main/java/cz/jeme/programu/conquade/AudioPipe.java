@@ -0,0 +1,103 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An ffmpeg process decoding the audio of a video to raw PCM (s16le) on its standard output.
+ * <p>The sound is available as soon as ffmpeg starts decoding, so no audio file has to be extracted first.</p>
+ */
+public final class AudioPipe implements Closeable {
+    /**
+     * The format of the decoded sound, 16-bit signed little-endian stereo at 44.1 kHz.
+     */
+    public static final @NotNull AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+
+    private final @NotNull String command;
+    private final @NotNull Process process;
+    private final @NotNull AudioInputStream audioStream;
+    private final @NotNull Thread logThread;
+    private final @NotNull StringBuffer log = new StringBuffer();
+    private boolean closed = false;
+
+    private AudioPipe(final @NotNull String command) {
+        this.command = command;
+        process = Conquade.spawn(command);
+        audioStream = new AudioInputStream(process.getInputStream(), FORMAT, AudioSystem.NOT_SPECIFIED);
+        logThread = new Thread(this::readLog, "ffmpeg-audio-log");
+        logThread.setDaemon(true);
+        logThread.start();
+    }
+
+    /**
+     * Starts ffmpeg decoding the audio of a video.
+     *
+     * @param inputFile  the input file to decode audio from
+     * @param audioTrack the index of the audio track to decode
+     * @return the audio pipe reading the decoded sound
+     */
+    public static @NotNull AudioPipe open(final @NotNull File inputFile, final int audioTrack) {
+        Conquade.LOGGER.info("Decoding audio using ffmpeg...");
+        final String cmd = "%s -nostdin -hide_banner -loglevel warning -i %s -map 0:a:%d -f s16le -ar %d -ac %d pipe:1"
+                .formatted(
+                        Conquade.ffmpegExe,
+                        inputFile.getAbsolutePath(),
+                        audioTrack,
+                        (int) FORMAT.getSampleRate(),
+                        FORMAT.getChannels()
+                );
+        return new AudioPipe(cmd);
+    }
+
+    private void readLog() {
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                log.append(line).append('\n');
+        } catch (IOException ignored) {
+            // the process was destroyed
+        }
+    }
+
+    /**
+     * Returns the decoded sound, it ends when ffmpeg finishes.
+     *
+     * @return the audio stream
+     */
+    public @NotNull AudioInputStream getAudioStream() {
+        return audioStream;
+    }
+
+    /**
+     * Stops ffmpeg if it is still decoding. When ffmpeg finished by itself with a code other than 0,
+     * a warning with its output is logged, the audio failing does not stop the video.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        final boolean stopped = process.isAlive();
+        if (stopped) process.destroy();
+        try {
+            final int code = process.waitFor();
+            logThread.join();
+            Conquade.release(process);
+            if (!stopped && code != 0) {
+                final String log = this.log.toString();
+                Conquade.LOGGER.warning("Could not decode audio, command failed with code %d!%nCommand:%n%s%nOutput log:%n%s"
+                        .formatted(
+                                code,
+                                '\t' + command,
+                                '\t' + log.strip().replace("\n", "\n\t")
+                        ));
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Could not wait for ffmpeg to finish!", e);
+        }
+    }
+}
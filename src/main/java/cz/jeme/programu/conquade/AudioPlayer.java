@@ -0,0 +1,225 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sound.sampled.*;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Plays audio through a {@link SourceDataLine}, streaming it from an input in small buffers.
+ * <p>Unlike a {@link Clip}, only a few buffers of sound are held in memory at once, no matter how long the audio is.
+ * The audio is fed to the line by a background thread and the line is filled ahead, so starting is instant.</p>
+ * <p>The position is computed from the sample frames actually played by the line, so it can be used for A/V sync.</p>
+ */
+public final class AudioPlayer implements Closeable {
+    /**
+     * How many sample frames are fed to the line at once.
+     */
+    public static final int FEED_FRAMES = 1024;
+
+    private final @NotNull SourceDataLine line;
+    private final @NotNull AudioFormat format;
+    private final @Nullable MappedInputStream mappedIn;
+    private final long dataOffset;
+    private final long frameLength;
+    private final @NotNull Object lock = new Object();
+    private final @NotNull Feeder feeder = new Feeder();
+    private @NotNull AudioInputStream in; // read only by the feeder
+    private volatile long generation = 0; // changes when the audio is moved
+    private long seekFrame = -1; // the frame the feeder should move the input to or -1
+    private long framesBase = 0; // the position when the line was at lineFramesBase
+    private long lineFramesBase = 0;
+    private volatile boolean ended = false;
+    private volatile boolean closed = false;
+    private volatile @Nullable IOException exception;
+
+    private AudioPlayer(final @NotNull AudioInputStream in, final @Nullable MappedInputStream mappedIn) {
+        this.in = in;
+        this.mappedIn = mappedIn;
+        dataOffset = mappedIn == null ? -1 : mappedIn.position();
+        format = in.getFormat();
+        frameLength = in.getFrameLength();
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format);
+        } catch (LineUnavailableException | IllegalArgumentException e) { // no line supports the format
+            throw new IllegalStateException("Could not open audio line!", e);
+        }
+        feeder.start();
+    }
+
+    /**
+     * Creates a new {@link AudioPlayer}, the audio can not be moved.
+     *
+     * @param in the audio to play
+     * @throws IllegalStateException when the audio line could not be opened
+     */
+    public AudioPlayer(final @NotNull AudioInputStream in) {
+        this(in, null);
+    }
+
+    /**
+     * Creates a new {@link AudioPlayer} playing an audio file read in place, the audio can be moved
+     * (see {@link AudioPlayer#setMicrosecondPosition(long)}).
+     *
+     * @param in the memory mapped audio file
+     * @return the audio player
+     * @throws IllegalStateException when the audio could not be read or the audio line could not be opened
+     */
+    public static @NotNull AudioPlayer open(final @NotNull MappedInputStream in) {
+        final AudioInputStream audioStream;
+        try {
+            audioStream = AudioSystem.getAudioInputStream(in); // leaves the input at the start of the sample frames
+        } catch (UnsupportedAudioFileException | IOException e) {
+            throw new IllegalStateException("Could not read audio!", e);
+        }
+        return new AudioPlayer(audioStream, in);
+    }
+
+    /**
+     * Starts or resumes playing the audio.
+     */
+    public void start() {
+        line.start();
+    }
+
+    /**
+     * Pauses playing the audio.
+     */
+    public void stop() {
+        line.stop();
+    }
+
+    /**
+     * Returns the position of the sound that is currently heard.
+     *
+     * @return the position in microseconds
+     */
+    public long getMicrosecondPosition() {
+        final long frames;
+        synchronized (lock) {
+            frames = framesBase + line.getLongFramePosition() - lineFramesBase;
+        }
+        return (long) (frames * 1_000_000D / format.getFrameRate());
+    }
+
+    /**
+     * Returns the length of the audio.
+     *
+     * @return the length in microseconds or -1 when it is not known
+     */
+    public long getMicrosecondLength() {
+        if (frameLength == AudioSystem.NOT_SPECIFIED) return -1;
+        return (long) (frameLength * 1_000_000D / format.getFrameRate());
+    }
+
+    /**
+     * Returns whether all the audio was played.
+     *
+     * @return whether the audio ended
+     */
+    public boolean hasEnded() {
+        return ended;
+    }
+
+    /**
+     * Returns whether the audio can be moved (see {@link AudioPlayer#setMicrosecondPosition(long)}).
+     *
+     * @return whether the audio is seekable
+     */
+    public boolean isSeekable() {
+        return mappedIn != null && frameLength != AudioSystem.NOT_SPECIFIED;
+    }
+
+    /**
+     * Moves the audio. The sound that was fed to the line but not yet played is discarded.
+     *
+     * @param microseconds the new position in microseconds, it is clamped to the audio length
+     * @throws IllegalStateException when the audio is not seekable
+     */
+    public void setMicrosecondPosition(final long microseconds) {
+        final MappedInputStream mappedIn = this.mappedIn;
+        if (mappedIn == null || !isSeekable())
+            throw new IllegalStateException("The audio can not be moved!");
+        final long frame = Math.max(0, Math.min((long) (microseconds / 1_000_000D * format.getFrameRate()), frameLength));
+        synchronized (lock) {
+            generation++;
+            line.flush();
+            seekFrame = frame; // the input is moved by the feeder, it may be reading it right now
+            framesBase = frame;
+            lineFramesBase = line.getLongFramePosition();
+            ended = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops playing and closes the audio line.
+     *
+     * @throws IOException when the audio could not be read while playing
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        feeder.interrupt(); // the feeder may be blocked reading the input
+        line.stop();
+        line.flush(); // releases the feeder waiting for space in the line
+        line.close();
+        final IOException exception = this.exception;
+        if (exception != null)
+            throw new IOException("Could not read audio!", exception);
+    }
+
+    /**
+     * A thread feeding the audio to the line.
+     */
+    private final class Feeder extends Thread {
+        private Feeder() {
+            super("audio-feeder");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            final byte[] buffer = new byte[FEED_FRAMES * format.getFrameSize()];
+            try {
+                while (!closed) {
+                    final long generation;
+                    final long seekFrame;
+                    synchronized (lock) {
+                        generation = AudioPlayer.this.generation;
+                        seekFrame = AudioPlayer.this.seekFrame;
+                        AudioPlayer.this.seekFrame = -1;
+                    }
+                    if (seekFrame != -1) move(seekFrame);
+                    // not read under the lock, the input may be a slow pipe and the position is read every frame
+                    final int read = in.read(buffer);
+                    if (read == -1) {
+                        line.drain();
+                        synchronized (lock) { // wait until the audio is moved or closed
+                            if (generation == AudioPlayer.this.generation) ended = true;
+                            while (!closed && generation == AudioPlayer.this.generation)
+                                lock.wait();
+                        }
+                    } else if (generation == AudioPlayer.this.generation) { // not moved while reading
+                        line.write(buffer, 0, read);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+                // the player was closed
+            } catch (IOException e) {
+                exception = e;
+                ended = true;
+            }
+        }
+
+        private void move(final long frame) {
+            final MappedInputStream mappedIn = AudioPlayer.this.mappedIn;
+            if (mappedIn == null) throw new IllegalStateException("The audio can not be moved!");
+            mappedIn.seek(dataOffset + frame * format.getFrameSize());
+            in = new AudioInputStream(mappedIn, format, frameLength - frame);
+        }
+    }
+}
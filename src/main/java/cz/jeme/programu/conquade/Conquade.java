@@ -10,9 +10,8 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.*;
 import java.util.stream.Collectors;
 
@@ -33,10 +32,41 @@ public final class Conquade {
      * The Conquade file extension.
      */
     public static final @NotNull String FILE_EXTENSION = ".cqd";
+    /**
+     * The name of the video data entry in a Conquade file.
+     */
+    public static final @NotNull String VIDEO_ENTRY = "video.dat";
+    /**
+     * The name of the audio entry in a Conquade file.
+     */
+    public static final @NotNull String AUDIO_ENTRY = "audio.wav";
+    /**
+     * The name of the frame index entry in a Conquade file (see {@link VideoIndex}).
+     */
+    public static final @NotNull String INDEX_ENTRY = "index.dat";
     /**
      * The Conquade logger.
      */
     public static final @NotNull Logger LOGGER = Logger.getLogger(Conquade.class.getName());
+    /**
+     * The terminal Conquade is running in.
+     * <p>When there is no terminal (Conquade runs headless, e.g. with redirected standard streams),
+     * a dumb terminal is used.</p>
+     */
+    public static final @NotNull Terminal TERMINAL;
+    /**
+     * The terminal width used when the terminal size could not be detected.
+     */
+    public static final int DEFAULT_TERMINAL_WIDTH = 80;
+    /**
+     * The terminal height used when the terminal size could not be detected.
+     */
+    public static final int DEFAULT_TERMINAL_HEIGHT = 24;
+    /**
+     * Whether the terminal size could not be detected and {@link Conquade#DEFAULT_TERMINAL_WIDTH} and
+     * {@link Conquade#DEFAULT_TERMINAL_HEIGHT} are used instead.
+     */
+    public static final boolean TERMINAL_SIZE_DEFAULTED;
     /**
      * The width of the terminal obtained when the script started.
      */
@@ -50,9 +80,9 @@ public final class Conquade {
      */
     public static @NotNull File conquadeTmpDir;
     /**
-     * All the {@link Process}es run by Conquade.
+     * All the {@link Process}es run by Conquade and their flight recorder events.
      */
-    private static final @NotNull Set<Process> PROCESSES = new HashSet<>();
+    private static final @NotNull Map<Process, ConquadeEvents.ProcessRun> PROCESSES = new ConcurrentHashMap<>(); // processes run in parallel
 
     /**
      * Whether the debug mode is enabled.
@@ -66,12 +96,17 @@ public final class Conquade {
 
     static {
         try {
-            final Terminal terminal = TerminalBuilder.terminal();
-            TERMINAL_WIDTH = terminal.getWidth();
-            TERMINAL_HEIGHT = terminal.getHeight() - 1; // reserved for screen overflow
+            TERMINAL = TerminalBuilder.builder()
+                    .dumb(true) // fall back to a dumb terminal without a warning when running headless
+                    .build();
         } catch (IOException e) {
-            throw new IllegalStateException("Could not detect terminal size!", e);
+            throw new IllegalStateException("Could not open terminal!", e);
         }
+        final int width = TERMINAL.getWidth();
+        final int height = TERMINAL.getHeight();
+        TERMINAL_SIZE_DEFAULTED = width <= 0 || height <= 1; // dumb terminals have no size
+        TERMINAL_WIDTH = TERMINAL_SIZE_DEFAULTED ? DEFAULT_TERMINAL_WIDTH : width;
+        TERMINAL_HEIGHT = (TERMINAL_SIZE_DEFAULTED ? DEFAULT_TERMINAL_HEIGHT : height) - 1; // reserved for screen overflow
 
         final String systemTmpDirPath = System.getProperty("java.io.tmpdir");
         if (systemTmpDirPath == null)
@@ -111,7 +146,7 @@ public final class Conquade {
             main0(args);
         } catch (Throwable t) {
             logError("An error occurred in \"main\"!", t);
-            PROCESSES.forEach(Process::destroy);
+            destroyProcesses();
             System.exit(1);
         }
     }
@@ -135,7 +170,11 @@ public final class Conquade {
             LOGGER.fine("Using 256 color mode.");
         }
 
-        LOGGER.fine("Detected terminal size %d×%d.".formatted(TERMINAL_WIDTH, TERMINAL_HEIGHT));
+        if (TERMINAL_SIZE_DEFAULTED && conquadeArgs.getAction() != ConquadeArgs.Action.HELP) {
+            LOGGER.warning("Could not detect terminal size, defaulted to %d×%d.".formatted(TERMINAL_WIDTH, TERMINAL_HEIGHT));
+        } else if (!TERMINAL_SIZE_DEFAULTED) {
+            LOGGER.fine("Detected terminal size %d×%d.".formatted(TERMINAL_WIDTH, TERMINAL_HEIGHT));
+        }
 
         final String newConquadeTmpDir = conquadeArgs.getArgMap().get("tmp");
         if (newConquadeTmpDir == null) {
@@ -265,14 +304,9 @@ public final class Conquade {
     public enum TmpSubdir {
         /**
          * Render temporary subdirectory.
-         * <p>Stores the extracted video frames, extracted audio and rendered video when rendering or streaming.</p>
+         * <p>Stores the extracted audio and rendered video data when rendering.</p>
          */
-        RENDER,
-        /**
-         * Play temporary subdirectory.
-         * <p>Stores the unpacked rendered video and audio when playing.</p>
-         */
-        PLAY;
+        RENDER;
 
 
         /**
@@ -296,14 +330,17 @@ public final class Conquade {
     public static int exec(final @NotNull String command) {
         ProcessBuilder processBuilder = new ProcessBuilder(command.split("\\s+"));
         processBuilder.redirectErrorStream(true);
+        final ConquadeEvents.ProcessRun event = new ConquadeEvents.ProcessRun(command);
+        event.begin();
         try {
             LOGGER.fine("$ %s".formatted(command));
             final Process process = processBuilder.start();
-            PROCESSES.add(process);
+            PROCESSES.put(process, event);
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
             IOUtils.copy(process.getInputStream(), baos);
             int code = process.waitFor();
             PROCESSES.remove(process);
+            event.commit(code);
             if (code != 0) {
                 final String log = baos.toString();
                 LOGGER.severe("Command failed with code %d!%nCommand:%n%s%nOutput log:%n%s"
@@ -321,4 +358,44 @@ public final class Conquade {
             throw new IllegalStateException("Could not execute command!", e);
         }
     }
+
+    /**
+     * Starts a command without waiting for it to finish.
+     * <p>The process is tracked and destroyed when Conquade fails, call {@link Conquade#release(Process)}
+     * once it is no longer needed.</p>
+     *
+     * @param command the command to start
+     * @return the started process
+     * @throws IllegalStateException when the command can not be started
+     */
+    public static @NotNull Process spawn(final @NotNull String command) {
+        ProcessBuilder processBuilder = new ProcessBuilder(command.split("\\s+"));
+        final ConquadeEvents.ProcessRun event = new ConquadeEvents.ProcessRun(command);
+        event.begin();
+        try {
+            LOGGER.fine("$ %s".formatted(command));
+            final Process process = processBuilder.start();
+            PROCESSES.put(process, event);
+            return process;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start command!", e);
+        }
+    }
+
+    /**
+     * Stops tracking a process started with {@link Conquade#spawn(String)}.
+     *
+     * @param process the process to release
+     */
+    public static void release(final @NotNull Process process) {
+        final ConquadeEvents.ProcessRun event = PROCESSES.remove(process);
+        if (event != null) event.commit(process.isAlive() ? -1 : process.exitValue());
+    }
+
+    /**
+     * Destroys all the running processes started by Conquade.
+     */
+    public static void destroyProcesses() {
+        PROCESSES.keySet().forEach(Process::destroy);
+    }
 }
@@ -0,0 +1,159 @@
+package cz.jeme.programu.conquade;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+/**
+ * The JDK Flight Recorder events emitted by Conquade.
+ * <p>Run Conquade with {@code -XX:StartFlightRecording=filename=conquade.jfr} to record them together with the JVM events
+ * (GC, I/O, threads...). When no recording is running, the events are disabled and cost next to nothing.</p>
+ * <p>An event is created and begun before the measured operation and committed after it, for example:</p>
+ * <pre>{@code
+ * final ConquadeEvents.FrameRead event = new ConquadeEvents.FrameRead();
+ * event.begin();
+ * videoReader.readFrame(frameData);
+ * event.commit(frameId, frameData.length);
+ * }</pre>
+ */
+public final class ConquadeEvents {
+    private ConquadeEvents() {
+        throw new AssertionError();
+    }
+
+    /**
+     * An event of an operation on one frame.
+     */
+    @Category({"Conquade", "Frames"})
+    @StackTrace(false) // emitted for every frame
+    public abstract static class FrameEvent extends Event {
+        @Label("Frame Id")
+        protected long frameId; // not private, so it is recorded for the subclasses
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        protected long bytes;
+
+        /**
+         * Ends the event and commits it, if it is enabled and long enough to be recorded.
+         *
+         * @param frameId the id of the frame
+         * @param bytes   the size of the frame output
+         */
+        public void commit(final long frameId, final long bytes) {
+            if (!shouldCommit()) return;
+            this.frameId = frameId;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    /**
+     * Converting a decoded frame into video frame data (and baking it), the size is of the video frame data
+     * (or of the baked terminal output).
+     */
+    @Name("conquade.FrameConvert")
+    @Label("Frame Convert")
+    @Description("Converting a decoded frame into video frame data")
+    public static final class FrameConvert extends FrameEvent {
+    }
+
+    /**
+     * Reading a frame, the size is of the read video frame data or terminal output.
+     * <p>When streaming, it is the time spent waiting for ffmpeg to decode the frame.</p>
+     */
+    @Name("conquade.FrameRead")
+    @Label("Frame Read")
+    @Description("Reading and decoding a frame")
+    public static final class FrameRead extends FrameEvent {
+    }
+
+    /**
+     * Encoding video frame data into terminal output, the size is of the terminal output.
+     */
+    @Name("conquade.FrameEncode")
+    @Label("Frame Encode")
+    @Description("Encoding video frame data into terminal output")
+    public static final class FrameEncode extends FrameEvent {
+    }
+
+    /**
+     * Writing the terminal output of a frame to the terminal, the size is of the terminal output.
+     */
+    @Name("conquade.FrameWrite")
+    @Label("Frame Write")
+    @Description("Writing the terminal output of a frame to the terminal")
+    public static final class FrameWrite extends FrameEvent {
+    }
+
+    /**
+     * A process run by Conquade (see {@link Conquade#exec(String)} and {@link Conquade#spawn(String)}).
+     */
+    @Name("conquade.ProcessRun")
+    @Label("Process Run")
+    @Description("An external process (ffmpeg) run by Conquade")
+    @Category("Conquade")
+    public static final class ProcessRun extends Event {
+        @Label("Command")
+        private final @NotNull String command;
+        @Label("Exit Code")
+        private int exitCode = -1;
+
+        /**
+         * Creates a new {@link ProcessRun} event.
+         *
+         * @param command the command of the process
+         */
+        public ProcessRun(final @NotNull String command) {
+            this.command = command;
+        }
+
+        /**
+         * Ends the event and commits it, if it is enabled and long enough to be recorded.
+         *
+         * @param exitCode the exit code of the process or -1 when it is still running
+         */
+        public void commit(final int exitCode) {
+            if (!shouldCommit()) return;
+            this.exitCode = exitCode;
+            commit();
+        }
+    }
+
+    /**
+     * Reading or writing an entry of a Conquade file (a tar archive).
+     */
+    @Name("conquade.Archive")
+    @Label("Archive")
+    @Description("Packing or unpacking an entry of a Conquade file")
+    @Category("Conquade")
+    public static final class Archive extends Event {
+        @Label("Operation")
+        private @NotNull String operation = "";
+        @Label("File")
+        private @NotNull String file = "";
+        @Label("Entry")
+        private @NotNull String entry = "";
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        private long bytes;
+
+        /**
+         * Ends the event and commits it, if it is enabled and long enough to be recorded.
+         *
+         * @param operation what was done with the entry ("pack", "unpack" or "open" when the entries were listed)
+         * @param file      the Conquade file
+         * @param entry     the name of the entry or an empty string for the whole file
+         * @param bytes     the size of the entry
+         */
+        public void commit(final @NotNull String operation, final @NotNull File file, final @NotNull String entry,
+                           final long bytes) {
+            if (!shouldCommit()) return;
+            this.operation = operation;
+            this.file = file.getAbsolutePath();
+            this.entry = entry;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
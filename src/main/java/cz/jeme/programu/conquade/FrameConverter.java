@@ -0,0 +1,27 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A backend converting raw RGB frames (3 bytes per pixel - red, green and blue) into video frame data.
+ * <p>The output must be exactly the same as the output of the scalar conversion in {@link Renderer}.</p>
+ */
+interface FrameConverter {
+    /**
+     * Transforms a raw RGB frame into 256 color video frame data.
+     *
+     * @param rgbFrame   the raw RGB frame to transform
+     * @param pixelCount the number of pixels in the frame
+     * @param data       the array to write the 256 video frame data to, must be at least pixelCount × 2 long
+     */
+    void renderFrame256(final byte @NotNull [] rgbFrame, final int pixelCount, final byte @NotNull [] data);
+
+    /**
+     * Transforms a raw RGB frame into RGB color video frame data.
+     *
+     * @param rgbFrame   the raw RGB frame to transform
+     * @param pixelCount the number of pixels in the frame
+     * @param data       the array to write the RGB video frame data to, must be at least pixelCount × 4 long
+     */
+    void renderFrameRGB(final byte @NotNull [] rgbFrame, final int pixelCount, final byte @NotNull [] data);
+}
@@ -0,0 +1,207 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Transforms video frame data into ANSI terminal output.
+ * <p>The output is written into an {@link AnsiBuffer}, so encoding a frame does not allocate anything per cell.</p>
+ * <p>In delta mode the encoder remembers the last encoded frame and only outputs the cells that changed since then.</p>
+ * <p>Color codes are only output when the color differs from the previous cell, colors are reset once per line.</p>
+ */
+public final class FrameEncoder {
+    private final int width;
+    private final int height;
+    private final boolean trueColor;
+    private final @NotNull Player.ColorTarget colorTarget;
+    private final boolean delta;
+    private final int redrawInterval;
+    private final int cellSize;
+    private final byte @NotNull [] previousFrame;
+    private boolean hasPreviousFrame = false;
+    private int framesSinceRedraw = 0;
+    private volatile boolean redrawRequested = false;
+    // The current SGR state of the terminal, -1 is the default color
+    private int foreground = -1;
+    private int background = -1;
+
+    /**
+     * Creates a new {@link FrameEncoder}.
+     *
+     * @param width          the width of the frames
+     * @param height         the height of the frames
+     * @param trueColor      whether the frames are RGB color video frame data, 256 color video frame data otherwise
+     * @param colorTarget    what should be colored
+     * @param delta          whether to output only the cells that changed since the previous frame
+     * @param redrawInterval after how many frames the whole frame is redrawn in delta mode, 0 to redraw only on demand
+     *                       (see {@link FrameEncoder#requestRedraw()})
+     */
+    public FrameEncoder(final int width, final int height, final boolean trueColor, final @NotNull Player.ColorTarget colorTarget,
+                        final boolean delta, final int redrawInterval) {
+        this.width = width;
+        this.height = height;
+        this.trueColor = trueColor;
+        this.colorTarget = colorTarget;
+        this.delta = delta;
+        this.redrawInterval = redrawInterval;
+        cellSize = trueColor ? 4 : 2;
+        previousFrame = new byte[delta ? width * height * cellSize : 0];
+    }
+
+    /**
+     * Creates a new {@link FrameEncoder} which always outputs whole frames.
+     *
+     * @param width       the width of the frames
+     * @param height      the height of the frames
+     * @param trueColor   whether the frames are RGB color video frame data, 256 color video frame data otherwise
+     * @param colorTarget what should be colored
+     */
+    public FrameEncoder(final int width, final int height, final boolean trueColor, final @NotNull Player.ColorTarget colorTarget) {
+        this(width, height, trueColor, colorTarget, false, 0);
+    }
+
+    /**
+     * Returns the size of one frame's video data in bytes.
+     *
+     * @return the frame data size
+     */
+    public int getFrameDataSize() {
+        return width * height * cellSize;
+    }
+
+    /**
+     * Makes the next frame encoded by {@link FrameEncoder#encodeFrame(byte[], AnsiBuffer)} a whole frame redraw.
+     * <p>This method can be called from any thread.</p>
+     */
+    public void requestRedraw() {
+        redrawRequested = true;
+    }
+
+    /**
+     * Appends the terminal output drawing the frame to the buffer.
+     * <p>The output expects the cursor to be on the first line of the frame and returns it there.</p>
+     *
+     * @param frameData the frame data to draw
+     * @param out       the buffer to append to
+     */
+    public void encodeFrame(final byte @NotNull [] frameData, final @NotNull AnsiBuffer out) {
+        out.append('\r');
+        if (!delta) {
+            encode(frameData, out);
+            out.appendCursorUp(height - 1);
+            return;
+        }
+        if (!hasPreviousFrame || redrawRequested || (redrawInterval > 0 && framesSinceRedraw >= redrawInterval)) {
+            redrawRequested = false;
+            framesSinceRedraw = 0;
+            encode(frameData, out);
+            out.appendCursorUp(height - 1);
+        } else {
+            framesSinceRedraw++;
+            encodeDelta(frameData, out);
+        }
+        System.arraycopy(frameData, 0, previousFrame, 0, previousFrame.length);
+        hasPreviousFrame = true;
+    }
+
+    /**
+     * Appends the ANSI representation of the whole frame data to the buffer, rows are separated by new lines.
+     *
+     * @param frameData the frame data to transform
+     * @param out       the buffer to append to
+     */
+    public void encode(final byte @NotNull [] frameData, final @NotNull AnsiBuffer out) {
+        for (int y = 0; y < height; y++) {
+            if (y != 0) out.append('\n');
+            for (int x = 0; x < width; x++)
+                appendCell(frameData, y * width + x, out);
+            appendReset(out);
+        }
+    }
+
+    private void encodeDelta(final byte @NotNull [] frameData, final @NotNull AnsiBuffer out) {
+        // the glyph is not printed when coloring only the highlight
+        final int compareFrom = colorTarget == Player.ColorTarget.HIGHLIGHT_ONLY ? 1 : 0;
+        int cursorX = 0;
+        int cursorY = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int cell = y * width + x;
+                if (!changed(frameData, cell * cellSize, compareFrom)) continue;
+                if (y != cursorY) {
+                    out.append('\r').appendCursorDown(y - cursorY);
+                    cursorX = 0;
+                    cursorY = y;
+                }
+                if (x != cursorX) out.appendCursorForward(x - cursorX);
+                appendCell(frameData, cell, out);
+                cursorX = x + 1;
+            }
+        }
+        appendReset(out);
+        if (cursorY != 0) out.appendCursorUp(cursorY);
+    }
+
+    private boolean changed(final byte @NotNull [] frameData, final int offset, final int compareFrom) {
+        for (int i = compareFrom; i < cellSize; i++)
+            if (frameData[offset + i] != previousFrame[offset + i]) return true;
+        return false;
+    }
+
+    private void appendCell(final byte @NotNull [] frameData, final int cell, final @NotNull AnsiBuffer out) {
+        final int pixel = cell * cellSize;
+        final int content = frameData[pixel];
+        if (trueColor) {
+            final int red = frameData[pixel + 1] & 0xFF;
+            final int green = frameData[pixel + 2] & 0xFF;
+            final int blue = frameData[pixel + 3] & 0xFF;
+            final int rgb = (red << 16) | (green << 8) | blue;
+            switch (colorTarget) {
+                case TEXT_ONLY -> {
+                    if (foreground != rgb) out.appendForegroundRGB(red, green, blue);
+                    foreground = rgb;
+                    out.appendGlyph(content);
+                }
+                case HIGHLIGHT_ONLY -> {
+                    if (background != rgb) out.appendBackgroundRGB(red, green, blue);
+                    background = rgb;
+                    out.append(' ');
+                }
+                case BLACK_TEXT -> {
+                    if (foreground != 0) out.appendForegroundRGB(0, 0, 0);
+                    foreground = 0;
+                    if (background != rgb) out.appendBackgroundRGB(red, green, blue);
+                    background = rgb;
+                    out.appendGlyph(content);
+                }
+            }
+        } else {
+            final int color = frameData[pixel + 1] & 0xFF;
+            switch (colorTarget) {
+                case TEXT_ONLY -> {
+                    if (foreground != color) out.appendForeground256(color);
+                    foreground = color;
+                    out.appendGlyph(content);
+                }
+                case HIGHLIGHT_ONLY -> {
+                    if (background != color) out.appendBackground256(color);
+                    background = color;
+                    out.append(' ');
+                }
+                case BLACK_TEXT -> {
+                    if (foreground != 0) out.appendForeground256(0);
+                    foreground = 0;
+                    if (background != color) out.appendBackground256(color);
+                    background = color;
+                    out.appendGlyph(content);
+                }
+            }
+        }
+    }
+
+    private void appendReset(final @NotNull AnsiBuffer out) {
+        if (foreground == -1 && background == -1) return;
+        out.appendReset();
+        foreground = -1;
+        background = -1;
+    }
+}
@@ -0,0 +1,185 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An ffmpeg process decoding a video to raw RGB frames (rgb24) on its standard output.
+ * <p>Every frame takes exactly width × height × 3 bytes, so no frame files are needed.</p>
+ * <p>Only the last {@link FramePipe#LOG_LINES} lines of the ffmpeg output are kept for the error message,
+ * so the memory used does not grow with the length of the video.</p>
+ */
+public final class FramePipe implements Closeable {
+    /**
+     * How many of the last lines of the ffmpeg output are kept.
+     */
+    public static final int LOG_LINES = 50;
+
+    private static final @NotNull Pattern DURATION_PATTERN = Pattern.compile("Duration: (\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+
+    private final @NotNull String command;
+    private final @NotNull Process process;
+    private final @NotNull InputStream frameStream;
+    private final @NotNull Thread logThread;
+    private final @NotNull ArrayDeque<String> log = new ArrayDeque<>(LOG_LINES); // read after the log thread finished
+    private long omittedLogLines = 0;
+    private final int fps;
+    private final int width;
+    private final int height;
+    private volatile int frameCountEstimate = 0;
+    private boolean exhausted = false;
+    private boolean closed = false;
+
+    private FramePipe(final @NotNull String command, final int fps, final int width, final int height) {
+        this.command = command;
+        this.fps = fps;
+        this.width = width;
+        this.height = height;
+        process = Conquade.spawn(command);
+        frameStream = new BufferedInputStream(process.getInputStream(), getFrameSize());
+        logThread = new Thread(this::readLog, "ffmpeg-log");
+        logThread.setDaemon(true);
+        logThread.start();
+    }
+
+    /**
+     * Starts ffmpeg decoding frames from a video.
+     *
+     * @param inputFile the input file to extract frames from
+     * @param fps       how many frames should be extracted per video second
+     * @param width     the width of the frames
+     * @param height    the height of the frames
+     * @return the frame pipe reading the decoded frames
+     */
+    public static @NotNull FramePipe open(final @NotNull File inputFile, final int fps, final int width, final int height) {
+        Conquade.LOGGER.info("Decoding frames using ffmpeg...");
+        // -nostats: no progress line every second, the info log level is kept for the duration
+        final String cmd = "%s -nostdin -hide_banner -nostats -i %s -r %d -an -vf scale=%d:%d -f rawvideo -pix_fmt rgb24 pipe:1"
+                .formatted(
+                        Conquade.ffmpegExe,
+                        inputFile.getAbsolutePath(),
+                        fps,
+                        width,
+                        height
+                );
+        return new FramePipe(cmd, fps, width, height);
+    }
+
+    private void readLog() {
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (log.size() == LOG_LINES) {
+                    log.removeFirst();
+                    omittedLogLines++;
+                }
+                log.addLast(line);
+                if (frameCountEstimate == 0) {
+                    final Matcher matcher = DURATION_PATTERN.matcher(line);
+                    if (matcher.find()) {
+                        final double seconds = Integer.parseInt(matcher.group(1)) * 3600D
+                                + Integer.parseInt(matcher.group(2)) * 60D
+                                + Double.parseDouble(matcher.group(3));
+                        frameCountEstimate = (int) Math.ceil(seconds * fps);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // the process was destroyed
+        }
+    }
+
+    /**
+     * Reads the next frame into the provided array.
+     *
+     * @param frame the array to read the frame into, must be at least {@link FramePipe#getFrameSize()} long
+     * @return true when a frame was read, false when there are no more frames
+     * @throws IllegalStateException when the frame could not be read or ffmpeg failed
+     */
+    public boolean read(final byte @NotNull [] frame) {
+        final int frameSize = getFrameSize();
+        final int read;
+        try {
+            read = frameStream.readNBytes(frame, 0, frameSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read frame from ffmpeg!", e);
+        }
+        if (read == frameSize) return true;
+        exhausted = true;
+        close();
+        if (read != 0)
+            throw new IllegalStateException("Ffmpeg frame ended prematurely (%d/%d bytes)!".formatted(read, frameSize));
+        return false;
+    }
+
+    /**
+     * Returns the size of one raw frame in bytes.
+     *
+     * @return the frame size
+     */
+    public int getFrameSize() {
+        return width * height * 3;
+    }
+
+    /**
+     * Returns the frame width.
+     *
+     * @return the frame width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the frame height.
+     *
+     * @return the frame height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of frames expected from the input duration reported by ffmpeg.
+     *
+     * @return the estimated frame count or 0 when the duration is not known (yet)
+     */
+    public int getFrameCountEstimate() {
+        return frameCountEstimate;
+    }
+
+    /**
+     * Waits for ffmpeg to finish. If the frames were not read to the end, ffmpeg is destroyed instead.
+     *
+     * @throws IllegalStateException when ffmpeg finished with a code other than 0
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (!exhausted) process.destroy();
+        try {
+            final int code = process.waitFor();
+            logThread.join();
+            Conquade.release(process);
+            if (exhausted && code != 0) {
+                final String log = (omittedLogLines == 0 ? "" : "(%d lines omitted)\n".formatted(omittedLogLines))
+                        + String.join("\n", this.log);
+                Conquade.LOGGER.severe("Command failed with code %d!%nCommand:%n%s%nOutput log:%n%s"
+                        .formatted(
+                                code,
+                                '\t' + command,
+                                '\t' + log.strip().replace("\n", "\n\t")
+                        ));
+                throw new IllegalStateException("Command failed with code %d!".formatted(code));
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Could not wait for ffmpeg to finish!", e);
+        }
+    }
+}
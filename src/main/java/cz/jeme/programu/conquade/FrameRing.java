@@ -0,0 +1,172 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer single-consumer ring of reusable frame buffers.
+ * <p>The producer thread claims a free {@link Slot}, fills it and publishes it, the consumer thread takes the published
+ * slots in order and releases them when the frame was printed. No locks are used and the slots are never reallocated,
+ * a waiting thread is parked until the other side makes progress.</p>
+ */
+public final class FrameRing {
+    private final @NotNull Slot @NotNull [] slots;
+    private volatile long head = 0; // the next slot to take
+    private volatile long tail = 0; // the next slot to publish
+    private volatile boolean finished = false;
+    private volatile boolean closed = false;
+    private volatile @Nullable Thread producer;
+    private volatile @Nullable Thread consumer;
+
+    /**
+     * Creates a new {@link FrameRing}.
+     *
+     * @param capacity how many frames can be buffered ahead
+     * @throws IllegalArgumentException when the capacity is not positive
+     */
+    public FrameRing(final int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The ring capacity must be positive!");
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++)
+            slots[i] = new Slot();
+    }
+
+    /**
+     * Waits for a free slot. Must be called only by the producer thread.
+     *
+     * @return the free slot to fill or null when the ring was closed by the consumer
+     */
+    public @Nullable Slot claim() {
+        producer = Thread.currentThread();
+        while (tail - head == slots.length) {
+            if (closed) return null;
+            LockSupport.park(this);
+        }
+        return closed ? null : slots[(int) (tail % slots.length)];
+    }
+
+    /**
+     * Makes the claimed slot available to the consumer. Must be called only by the producer thread.
+     */
+    public void publish() {
+        tail = tail + 1; // only the producer writes the tail
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Marks that no more slots will be published. Must be called only by the producer thread.
+     */
+    public void finish() {
+        finished = true;
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Waits for the next published slot. Must be called only by the consumer thread.
+     *
+     * @return the published slot or null when the producer finished and all the slots were taken
+     */
+    public @Nullable Slot take() {
+        consumer = Thread.currentThread();
+        while (head == tail) {
+            if (finished) return head == tail ? null : slots[(int) (head % slots.length)];
+            LockSupport.park(this);
+        }
+        return slots[(int) (head % slots.length)];
+    }
+
+    /**
+     * Returns the taken slot to the producer. Must be called only by the consumer thread.
+     */
+    public void release() {
+        head = head + 1; // only the consumer writes the head
+        LockSupport.unpark(producer);
+    }
+
+    /**
+     * Stops the producer, every following {@link FrameRing#claim()} returns null. Must be called only by the consumer thread.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+    }
+
+    /**
+     * Returns the number of published slots that were not taken yet.
+     *
+     * @return the number of buffered frames
+     */
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Returns how many frames can be buffered ahead.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * A reusable buffer of a single frame.
+     */
+    public static final class Slot {
+        private final @NotNull AnsiBuffer frame = new AnsiBuffer();
+        private long frameId;
+        private int epoch;
+
+        private Slot() {
+        }
+
+        /**
+         * Returns the buffer holding the terminal output of the frame.
+         *
+         * @return the frame buffer
+         */
+        public @NotNull AnsiBuffer getFrame() {
+            return frame;
+        }
+
+        /**
+         * Returns the id of the frame.
+         *
+         * @return the frame id
+         */
+        public long getFrameId() {
+            return frameId;
+        }
+
+        /**
+         * Sets the id of the frame.
+         *
+         * @param frameId the frame id
+         */
+        public void setFrameId(final long frameId) {
+            this.frameId = frameId;
+        }
+
+        /**
+         * Returns the epoch the frame was produced in, the epoch changes when the producer moves to a different frame
+         * and the frames produced before are no longer wanted.
+         *
+         * @return the epoch
+         */
+        public int getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * Sets the epoch the frame was produced in.
+         *
+         * @param epoch the epoch
+         */
+        public void setEpoch(final int epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes finished frames directly to the standard output file descriptor (or to any other channel).
+ * <p>The frames are already UTF-8 encoded, so they bypass {@link System#out} and its charset encoding, locking
+ * and flushing. Every frame, including the cursor movement back to the top of the frame, is written with one
+ * (gathering) write to the channel.</p>
+ * <p>When synchronized output is enabled, the frame is wrapped in a synchronized update
+ * ({@link AnsiHelper#BEGIN_SYNCHRONIZED_UPDATE}), so supporting terminals never show a half drawn frame.
+ * Terminals without support ignore the codes.</p>
+ */
+public final class FrameSink {
+    private static final byte @NotNull [] BEGIN_SYNCHRONIZED_UPDATE = AnsiHelper.BEGIN_SYNCHRONIZED_UPDATE.getBytes(StandardCharsets.UTF_8);
+    private static final byte @NotNull [] END_SYNCHRONIZED_UPDATE = AnsiHelper.END_SYNCHRONIZED_UPDATE.getBytes(StandardCharsets.UTF_8);
+
+    private final @NotNull GatheringByteChannel channel;
+    private final boolean synchronizedOutput;
+    private final ByteBuffer @NotNull [] buffers;
+
+    /**
+     * Creates a new {@link FrameSink} writing to the standard output.
+     * <p>Anything printed to {@link System#out} before is flushed, so it is not written after the frames.</p>
+     *
+     * @param synchronizedOutput whether to wrap every frame in a synchronized update
+     */
+    public FrameSink(final boolean synchronizedOutput) {
+        this(new FileOutputStream(FileDescriptor.out).getChannel(), synchronizedOutput);
+        System.out.flush();
+    }
+
+    /**
+     * Creates a new {@link FrameSink} writing to a channel, e.g. to measure the output without a terminal.
+     *
+     * @param channel            the channel to write the frames to
+     * @param synchronizedOutput whether to wrap every frame in a synchronized update
+     */
+    public FrameSink(final @NotNull GatheringByteChannel channel, final boolean synchronizedOutput) {
+        this.channel = channel;
+        this.synchronizedOutput = synchronizedOutput;
+        buffers = synchronizedOutput
+                ? new ByteBuffer[]{ByteBuffer.wrap(BEGIN_SYNCHRONIZED_UPDATE), null, ByteBuffer.wrap(END_SYNCHRONIZED_UPDATE)}
+                : new ByteBuffer[1];
+    }
+
+    /**
+     * Writes a frame encoded by {@link FrameEncoder#encodeFrame(byte[], AnsiBuffer)}.
+     *
+     * @param frame the frame terminal output
+     * @throws IOException when the frame could not be written
+     */
+    public void write(final @NotNull AnsiBuffer frame) throws IOException {
+        final ByteBuffer frameBuffer = frame.byteBuffer(); // every ring slot keeps its own wrapper
+        if (synchronizedOutput) {
+            buffers[0].rewind();
+            buffers[1] = frameBuffer;
+            buffers[2].rewind();
+        } else {
+            buffers[0] = frameBuffer;
+        }
+        final ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) // a single write unless the terminal accepts only a part of the frame
+            channel.write(buffers);
+    }
+
+    /**
+     * Returns whether every frame is wrapped in a synchronized update.
+     *
+     * @return whether synchronized output is enabled
+     */
+    public boolean isSynchronizedOutput() {
+        return synchronizedOutput;
+    }
+}
@@ -0,0 +1,117 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds with a fixed memory footprint.
+ * <p>Durations below {@link LatencyHistogram#LINEAR_BUCKETS} nanoseconds are counted exactly, every longer power of two
+ * is split into {@link LatencyHistogram#SUB_BUCKETS} buckets, so the percentiles are off by at most 1/16.</p>
+ * <p>Durations may be recorded and read from any thread.</p>
+ */
+public final class LatencyHistogram {
+    /**
+     * How many buckets every power of two is split into.
+     */
+    public static final int SUB_BUCKETS = 16;
+    /**
+     * The durations shorter than this are counted in their own bucket.
+     */
+    public static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+    private static final int LINEAR_BITS = Integer.numberOfTrailingZeros(LINEAR_BUCKETS);
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    private final @NotNull AtomicLongArray buckets = new AtomicLongArray(bucketIndex(Long.MAX_VALUE) + 1);
+    private final @NotNull AtomicLong count = new AtomicLong();
+    private final @NotNull AtomicLong sum = new AtomicLong();
+    private final @NotNull AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative durations are recorded as 0
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketIndex(value));
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+        count.incrementAndGet(); // last, so the other values are complete when the count is read
+    }
+
+    /**
+     * Returns how many durations were recorded.
+     *
+     * @return the number of durations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of all the recorded durations.
+     *
+     * @return the total duration in nanoseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return the longest duration in nanoseconds or 0 when nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded durations.
+     *
+     * @return the mean duration in nanoseconds or 0 when nothing was recorded
+     */
+    public double getMean() {
+        final long count = getCount();
+        return count == 0 ? 0 : getSum() / (double) count;
+    }
+
+    /**
+     * Returns the approximate duration which the given part of the recorded durations does not exceed.
+     *
+     * @param quantile the part of the durations (0 - 1), for example 0.99 for the 99th percentile
+     * @return the duration in nanoseconds or 0 when nothing was recorded
+     */
+    public long getPercentile(final double quantile) {
+        final long count = getCount();
+        if (count == 0) return 0;
+        final long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= target) return Math.min(bucketValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < LINEAR_BUCKETS) return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the middle of the durations counted in a bucket.
+     */
+    private static long bucketValue(final int index) {
+        if (index < LINEAR_BUCKETS) return index;
+        final int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        final long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        final long bucketWidth = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + subBucket) * bucketWidth + bucketWidth / 2;
+    }
+}
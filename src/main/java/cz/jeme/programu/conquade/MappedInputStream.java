@@ -0,0 +1,132 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream reading a region of a file through memory mapping.
+ * <p>The region is mapped in windows of at most {@link MappedInputStream#WINDOW_SIZE} bytes,
+ * so regions larger than 2 GB can be read as well. Reading does not copy the file anywhere first.</p>
+ */
+public final class MappedInputStream extends InputStream {
+    /**
+     * The maximum size of one mapped window.
+     */
+    public static final long WINDOW_SIZE = 1L << 30; // 1 GiB
+
+    private final @NotNull FileChannel channel;
+    private final long offset;
+    private final long size;
+    private @Nullable MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+    private long mark = 0;
+
+    /**
+     * Creates a new {@link MappedInputStream}.
+     *
+     * @param channel the channel of the file, it is not closed by this stream
+     * @param offset  the offset of the region in the file
+     * @param size    the size of the region
+     */
+    public MappedInputStream(final @NotNull FileChannel channel, final long offset, final long size) {
+        this.channel = channel;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Returns the mapped window containing the current position, remapping it when needed.
+     *
+     * @return the window positioned at the current position or null at the end of the region
+     */
+    private @Nullable MappedByteBuffer window() throws IOException {
+        if (position >= size) return null;
+        if (window == null || position < windowStart || position >= windowStart + window.capacity()) {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset + windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+        }
+        window.position((int) (position - windowStart));
+        return window;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final MappedByteBuffer window = window();
+        if (window == null) return -1;
+        position++;
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte @NotNull [] b, final int off, final int len) throws IOException {
+        if (len == 0) return 0;
+        final MappedByteBuffer window = window();
+        if (window == null) return -1;
+        final int read = Math.min(len, window.remaining());
+        window.get(b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) {
+        final long skipped = Math.max(0, Math.min(n, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(final int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public void reset() {
+        position = mark;
+    }
+
+    /**
+     * Returns the current position in the region.
+     *
+     * @return the position
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Moves to a position in the region.
+     *
+     * @param position the new position
+     */
+    public void seek(final long position) {
+        if (position < 0 || position > size)
+            throw new IllegalArgumentException("Position %d is out of the region!".formatted(position));
+        this.position = position;
+    }
+
+    /**
+     * Returns the size of the region.
+     *
+     * @return the size
+     */
+    public long size() {
+        return size;
+    }
+}
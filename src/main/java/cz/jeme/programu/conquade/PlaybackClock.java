@@ -0,0 +1,200 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The clock deciding when a frame should be printed.
+ * <p>Every frame has an absolute due time ({@code frame id / fps}) on the media timeline, so rounding errors never
+ * accumulate. When audio is played, the media time is the position of the played audio and the video follows it,
+ * otherwise (or after the audio ended) the media time is measured by {@link System#nanoTime()}.</p>
+ * <p>The clock may be read from any thread, but only one thread may control it (start, pause, resume and seek).</p>
+ * <p>An unpaced clock (see {@link PlaybackClock#unpaced(int)}) never waits for a frame and never drops one,
+ * so the playback runs as fast as the frames can be printed.</p>
+ */
+public final class PlaybackClock {
+    /**
+     * The longest time in nanoseconds to wait before checking the media time again.
+     */
+    public static final long MAX_WAIT = 5_000_000L; // 5 ms
+
+    private final int fps;
+    private final @Nullable AudioPlayer audio;
+    private final boolean paced;
+    private final @NotNull AtomicLong droppedFrames = new AtomicLong();
+    private final @NotNull AtomicReference<Anchor> anchor;
+
+    /**
+     * Creates a new stopped {@link PlaybackClock} at the start of the video.
+     *
+     * @param fps   the video framerate
+     * @param audio the audio to follow or null when the video is played without audio
+     */
+    public PlaybackClock(final int fps, final @Nullable AudioPlayer audio) {
+        this(fps, audio, true);
+    }
+
+    private PlaybackClock(final int fps, final @Nullable AudioPlayer audio, final boolean paced) {
+        this.fps = fps;
+        this.audio = audio;
+        this.paced = paced;
+        anchor = new AtomicReference<>(new Anchor(0, 0, false, audio == null));
+    }
+
+    /**
+     * Creates a new stopped {@link PlaybackClock} at the start of the video, which never waits for a frame.
+     * Used to measure the playback without the frame pacing.
+     *
+     * @param fps the video framerate
+     * @return the unpaced clock
+     */
+    static @NotNull PlaybackClock unpaced(final int fps) {
+        return new PlaybackClock(fps, null, false);
+    }
+
+    /**
+     * Starts or resumes the clock and the audio.
+     */
+    public void start() {
+        final Anchor anchor = this.anchor.getAndUpdate(a -> a.running
+                ? a
+                : new Anchor(System.nanoTime(), a.position, true, a.audioEnded));
+        if (anchor.running) return;
+        if (audio != null && !anchor.audioEnded) audio.start();
+    }
+
+    /**
+     * Pauses the clock and the audio.
+     */
+    public void pause() {
+        final Anchor anchor = this.anchor.getAndUpdate(a -> a.running
+                ? new Anchor(System.nanoTime(), getPosition(a), false, a.audioEnded)
+                : a);
+        if (anchor.running && audio != null) audio.stop();
+    }
+
+    /**
+     * Returns whether the clock is running.
+     *
+     * @return whether the clock is running
+     */
+    public boolean isRunning() {
+        return anchor.get().running;
+    }
+
+    /**
+     * Moves the clock and the audio to a frame.
+     *
+     * @param frameId the id of the frame to move to
+     */
+    public void seek(final long frameId) {
+        final long position = getDueTime(frameId);
+        boolean audioEnded = true;
+        if (audio != null) {
+            audio.setMicrosecondPosition(position / 1000);
+            final long audioLength = audio.getMicrosecondLength();
+            audioEnded = audioLength != -1 && position >= audioLength * 1000;
+        }
+        final boolean ended = audioEnded;
+        final Anchor anchor = this.anchor.updateAndGet(a -> new Anchor(System.nanoTime(), position, a.running, ended));
+        if (audio != null && anchor.running && !ended) audio.start();
+    }
+
+    /**
+     * Returns the current media time.
+     *
+     * @return the media time in nanoseconds
+     */
+    public long getPosition() {
+        final Anchor anchor = this.anchor.get();
+        final long position = getPosition(anchor);
+        if (anchor.running && !anchor.audioEnded && audio != null && audio.hasEnded()) {
+            // the audio ended, continue from its end using the system clock,
+            // unless the clock was paused or moved meanwhile
+            this.anchor.compareAndSet(anchor, new Anchor(System.nanoTime(), position, true, true));
+        }
+        return position;
+    }
+
+    /**
+     * Returns the media time of an anchor without changing the anchor.
+     */
+    private long getPosition(final @NotNull Anchor anchor) {
+        if (!anchor.running) return anchor.position;
+        if (!anchor.audioEnded && audio != null) return audio.getMicrosecondPosition() * 1000;
+        return anchor.position + System.nanoTime() - anchor.nanoTime;
+    }
+
+    /**
+     * Returns the media time a frame should be printed at.
+     *
+     * @param frameId the id of the frame
+     * @return the due time in nanoseconds
+     */
+    public long getDueTime(final long frameId) {
+        return frameId * 1_000_000_000L / fps;
+    }
+
+    /**
+     * Returns whether a frame is late, that is the next frame is already due.
+     *
+     * @param frameId the id of the frame
+     * @return whether the frame is late and should be dropped, always false for an unpaced clock
+     */
+    public boolean isLate(final long frameId) {
+        return paced && getPosition() >= getDueTime(frameId + 1);
+    }
+
+    /**
+     * Waits until a frame is due. Returns immediately when the clock is paused or unpaced.
+     *
+     * @param frameId the id of the frame
+     */
+    public void awaitFrame(final long frameId) {
+        if (!paced) return;
+        final long dueTime = getDueTime(frameId);
+        while (anchor.get().running) {
+            final long remaining = dueTime - getPosition();
+            if (remaining <= 0) return;
+            LockSupport.parkNanos(Math.min(remaining, MAX_WAIT));
+        }
+    }
+
+    /**
+     * Counts a dropped frame.
+     */
+    public void dropFrame() {
+        droppedFrames.incrementAndGet();
+    }
+
+    /**
+     * Returns how many frames were dropped, because they were late.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * The media time at a system time.
+     * <p>It is replaced as a whole, so the clock state is always consistent when read from another thread.</p>
+     */
+    private static final class Anchor {
+        private final long nanoTime;
+        private final long position;
+        private final boolean running;
+        private final boolean audioEnded; // whether the media time is measured by the system clock
+
+        private Anchor(final long nanoTime, final long position, final boolean running, final boolean audioEnded) {
+            this.nanoTime = nanoTime;
+            this.position = position;
+            this.running = running;
+            this.audioEnded = audioEnded;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performance statistics of a playback: the time every frame spent in every {@link Stage},
+ * how many frames were dropped or printed late and how many bytes were written to the terminal.
+ * <p>The stages may be recorded from any thread, the printed frames and the overlay only from the printing thread.</p>
+ * <p>The statistics can be shown live in a one line overlay below the frames ({@link PlaybackStats#appendOverlay(AnsiBuffer)})
+ * and written as a JSON report ({@link PlaybackStats#writeReport(File, File)}).</p>
+ */
+public final class PlaybackStats {
+    /**
+     * How often the overlay is updated in nanoseconds.
+     */
+    public static final long OVERLAY_INTERVAL = 500_000_000L; // 500 ms
+
+    private final int width;
+    private final int height;
+    private final int fps;
+    private final @NotNull PlaybackClock clock;
+    private final @NotNull LatencyHistogram @NotNull [] stages = new LatencyHistogram[Stage.values().length];
+    private final @NotNull AtomicLong frames = new AtomicLong();
+    private final @NotNull AtomicLong bytes = new AtomicLong();
+    private final @NotNull AtomicLong lateFrames = new AtomicLong();
+    private volatile long firstFrameTime = -1;
+    private volatile long lastFrameTime = -1;
+    private boolean reportWritten = false;
+    // The state of the overlay when it was last updated
+    private boolean overlayShown = false;
+    private long overlayTime;
+    private long overlayFrames;
+    private long overlayBytes;
+    private final long @NotNull [] overlayCounts = new long[stages.length];
+    private final long @NotNull [] overlaySums = new long[stages.length];
+
+    /**
+     * Creates new empty {@link PlaybackStats}.
+     *
+     * @param width  the width of the frames
+     * @param height the height of the frames
+     * @param fps    the video framerate
+     * @param clock  the clock of the playback, counting the dropped frames
+     */
+    public PlaybackStats(final int width, final int height, final int fps, final @NotNull PlaybackClock clock) {
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.clock = clock;
+        for (int i = 0; i < stages.length; i++)
+            stages[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Records the time a frame spent in a stage.
+     *
+     * @param stage     the stage
+     * @param startTime when the stage started processing the frame ({@link System#nanoTime()})
+     * @return the current {@link System#nanoTime()}, the start of the next stage
+     */
+    public long record(final @NotNull Stage stage, final long startTime) {
+        final long now = System.nanoTime();
+        stages[stage.ordinal()].record(now - startTime);
+        return now;
+    }
+
+    /**
+     * Records how late a frame was printed and counts it as late when the next frame was already due.
+     *
+     * @param frameId the id of the printed frame
+     */
+    public void recordLag(final long frameId) {
+        final long position = clock.getPosition();
+        stages[Stage.LAG.ordinal()].record(position - clock.getDueTime(frameId));
+        if (position >= clock.getDueTime(frameId + 1)) lateFrames.incrementAndGet();
+    }
+
+    /**
+     * Counts a frame written to the terminal.
+     *
+     * @param frameBytes the size of the frame terminal output in bytes
+     */
+    public void countFrame(final int frameBytes) {
+        final long now = System.nanoTime();
+        if (firstFrameTime == -1) firstFrameTime = now;
+        lastFrameTime = now;
+        bytes.addAndGet(frameBytes);
+        frames.incrementAndGet();
+    }
+
+    /**
+     * Returns the statistics of a stage.
+     *
+     * @param stage the stage
+     * @return the histogram of the time the frames spent in the stage
+     */
+    public @NotNull LatencyHistogram getStage(final @NotNull Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * Returns how many frames were written to the terminal.
+     *
+     * @return the number of written frames
+     */
+    public long getFrames() {
+        return frames.get();
+    }
+
+    /**
+     * Returns how many bytes were written to the terminal.
+     *
+     * @return the number of written bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns how many frames were printed when the next frame was already due.
+     *
+     * @return the number of late frames
+     */
+    public long getLateFrames() {
+        return lateFrames.get();
+    }
+
+    /**
+     * Returns the time between the first and the last written frame.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDuration() {
+        final long firstFrameTime = this.firstFrameTime;
+        return firstFrameTime == -1 ? 0 : lastFrameTime - firstFrameTime;
+    }
+
+    /**
+     * Appends the overlay to a frame, when the overlay should be updated.
+     * <p>The overlay is printed on the line below the frame, it shows the framerate, the output bandwidth, the average
+     * time the frames spent in every stage since the last update and the dropped and late frames.</p>
+     *
+     * @param frame the terminal output of the frame, it must return the cursor to the first line of the frame
+     */
+    public void appendOverlay(final @NotNull AnsiBuffer frame) {
+        final long now = System.nanoTime();
+        if (overlayShown && now - overlayTime < OVERLAY_INTERVAL) return;
+        final double seconds = (now - overlayTime) / 1e9;
+        final long frames = getFrames() - overlayFrames;
+        final long bytes = getBytes() - overlayBytes;
+        final StringBuilder overlay = new StringBuilder();
+        if (overlayShown) {
+            overlay.append(ConquadeLogFormatter.DECIMAL_FORMATTER.format(frames / seconds)).append(" FPS | ")
+                    .append(ConquadeLogFormatter.DECIMAL_FORMATTER.format(bytes / seconds / 1_000_000)).append(" MB/s | ")
+                    .append(frames == 0 ? 0 : bytes / frames / 1000).append(" KB/frame");
+        }
+        for (final Stage stage : Stage.values()) {
+            final LatencyHistogram histogram = getStage(stage);
+            final long count = histogram.getCount();
+            final long sum = histogram.getSum();
+            final int i = stage.ordinal();
+            if (overlayShown && count != overlayCounts[i]) {
+                overlay.append(" | ").append(stage).append(' ')
+                        .append(ConquadeLogFormatter.DECIMAL_FORMATTER.format((sum - overlaySums[i]) / 1e6 / (count - overlayCounts[i])))
+                        .append(" ms");
+            }
+            overlayCounts[i] = count;
+            overlaySums[i] = sum;
+        }
+        if (overlayShown)
+            overlay.append(" | ").append(clock.getDroppedFrames()).append(" dropped | ").append(getLateFrames()).append(" late");
+        overlay.setLength(Math.min(overlay.length(), width - 1)); // a longer line would wrap and scroll the terminal
+        overlayShown = true;
+        overlayTime = now;
+        overlayFrames = getFrames();
+        overlayBytes = getBytes();
+
+        frame.append('\r').appendCursorDown(height)
+                .append(AnsiHelper.CLEAR_LINE.getBytes(StandardCharsets.UTF_8))
+                .append(overlay.toString().getBytes(StandardCharsets.UTF_8))
+                .append('\r').appendCursorUp(height);
+    }
+
+    /**
+     * Clears the overlay from the terminal, if it was shown. The cursor must be on the first line of the frame.
+     */
+    public void clearOverlay() {
+        if (!overlayShown) return;
+        System.out.print('\r' + AnsiHelper.moveCursorDown(height) + AnsiHelper.CLEAR_LINE + AnsiHelper.moveCursorUp(height));
+        System.out.flush();
+    }
+
+    /**
+     * Returns a one line summary of the playback performance.
+     *
+     * @return the summary
+     */
+    public @NotNull String getSummary() {
+        final long frames = getFrames();
+        final double seconds = getDuration() / 1e9;
+        return "%d frames printed, %d dropped, %d late, %s KB/frame, %s MB/s.".formatted(
+                frames,
+                clock.getDroppedFrames(),
+                getLateFrames(),
+                ConquadeLogFormatter.DECIMAL_FORMATTER.format(frames == 0 ? 0 : getBytes() / (double) frames / 1000),
+                ConquadeLogFormatter.DECIMAL_FORMATTER.format(seconds == 0 ? 0 : getBytes() / seconds / 1_000_000)
+        );
+    }
+
+    /**
+     * Returns the statistics as a JSON object. The durations are in microseconds.
+     *
+     * @param inputFile the played file
+     * @return the JSON report
+     */
+    public @NotNull String toJson(final @NotNull File inputFile) {
+        final long frames = getFrames();
+        final long bytes = getBytes();
+        final double seconds = getDuration() / 1e9;
+        final StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"input\": ").append(jsonString(inputFile.getAbsolutePath())).append(",\n");
+        json.append("  \"width\": ").append(width).append(",\n");
+        json.append("  \"height\": ").append(height).append(",\n");
+        json.append("  \"fps\": ").append(fps).append(",\n");
+        json.append("  \"durationMillis\": ").append(getDuration() / 1_000_000).append(",\n");
+        json.append("  \"framesPrinted\": ").append(frames).append(",\n");
+        json.append("  \"framesDropped\": ").append(clock.getDroppedFrames()).append(",\n");
+        json.append("  \"framesLate\": ").append(getLateFrames()).append(",\n");
+        json.append("  \"bytesWritten\": ").append(bytes).append(",\n");
+        json.append("  \"bytesPerFrame\": ").append(jsonNumber(frames == 0 ? 0 : bytes / (double) frames)).append(",\n");
+        json.append("  \"bytesPerSecond\": ").append(jsonNumber(seconds == 0 ? 0 : bytes / seconds)).append(",\n");
+        json.append("  \"stages\": {");
+        boolean first = true;
+        for (final Stage stage : Stage.values()) {
+            final LatencyHistogram histogram = getStage(stage);
+            if (histogram.getCount() == 0) continue; // not used by this playback
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    \"").append(stage).append("\": {")
+                    .append("\"count\": ").append(histogram.getCount())
+                    .append(", \"mean\": ").append(jsonNumber(histogram.getMean() / 1000))
+                    .append(", \"p50\": ").append(jsonNumber(histogram.getPercentile(0.5) / 1000D))
+                    .append(", \"p90\": ").append(jsonNumber(histogram.getPercentile(0.9) / 1000D))
+                    .append(", \"p99\": ").append(jsonNumber(histogram.getPercentile(0.99) / 1000D))
+                    .append(", \"max\": ").append(jsonNumber(histogram.getMax() / 1000D))
+                    .append('}');
+        }
+        json.append(first ? "}\n" : "\n  }\n");
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * Writes the JSON report ({@link PlaybackStats#toJson(File)}) to a file. Only the first call writes the report,
+     * so it can be written both when the playback finishes and from a shutdown hook.
+     *
+     * @param reportFile the file to write the report to
+     * @param inputFile  the played file
+     * @throws IllegalStateException when the report could not be written
+     */
+    public synchronized void writeReport(final @NotNull File reportFile, final @NotNull File inputFile) {
+        if (reportWritten) return;
+        reportWritten = true;
+        try {
+            Files.writeString(reportFile.toPath(), toJson(inputFile), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write stats report (\"%s\")!".formatted(reportFile.getAbsolutePath()), e);
+        }
+    }
+
+    private static @NotNull String jsonNumber(final double number) {
+        return String.format(Locale.ROOT, "%.3f", number);
+    }
+
+    private static @NotNull String jsonString(final @NotNull String string) {
+        final StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u%04x".formatted((int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * A stage every frame goes through before it is printed.
+     */
+    public enum Stage {
+        /**
+         * Reading the frame: reading and decoding the video data or waiting for ffmpeg to decode the frame.
+         */
+        READ,
+        /**
+         * Converting the decoded frame into video frame data (only when streaming).
+         */
+        CONVERT,
+        /**
+         * Encoding the video frame data into terminal output (not for baked videos).
+         */
+        ENCODE,
+        /**
+         * Writing the terminal output to the terminal.
+         */
+        WRITE,
+        /**
+         * How late the frame was printed after its due time, because the wait overshot or the frame was not ready.
+         */
+        LAG;
+
+        /**
+         * Returns the lowercase enum constant name.
+         *
+         * @return {@link Enum#name()} but lowercase
+         */
+        @Override
+        public @NotNull String toString() {
+            return name().toLowerCase();
+        }
+    }
+}
@@ -1,19 +1,20 @@
 package cz.jeme.programu.conquade;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.compress.archivers.tar.TarFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jline.terminal.Attributes;
+import org.jline.utils.NonBlockingReader;
 
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.*;
-import java.nio.file.Path;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 
 /**
  * A singleton class used to play Conquade video files.
@@ -24,7 +25,24 @@ public enum Player {
      */
     INSTANCE;
 
-    private @Nullable StringBuilder frameBuilder;
+    /**
+     * The default number of frames after which the whole frame is redrawn in delta output mode.
+     */
+    public static final int DEFAULT_REDRAW_INTERVAL = 300;
+    /**
+     * By how many seconds the arrow keys move the video.
+     */
+    public static final int SEEK_STEP = 10;
+    /**
+     * How long to wait between checking the keys when the video is paused in milliseconds.
+     */
+    public static final int PAUSE_POLL_INTERVAL = 50;
+    /**
+     * The default number of frames read and encoded ahead of the playback.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8;
+
+    private final @NotNull AnsiBuffer frameBuffer = new AnsiBuffer();
 
     /**
      * Cleanup the console after finishing a video.
@@ -50,58 +68,70 @@ public enum Player {
      * @param args the play args
      */
     public void play(final @NotNull PlayArgs args) {
+        open(args, (videoReader, audio) -> play(args, videoReader, audio));
+    }
+
+    /**
+     * Opens the video data and the audio of the input file and passes them to the handler.
+     * They are closed when the handler returns.
+     *
+     * @param args    the play args
+     * @param handler the handler playing the video
+     * @throws IllegalStateException    when the input file could not be read
+     * @throws IllegalArgumentException when the input file does not contain video data
+     */
+    void open(final @NotNull PlayArgs args, final @NotNull VideoHandler handler) {
         final File inputFile = args.getInputFile();
 
-        final File playerTmpDir = Conquade.prepareTmp().get(Conquade.TmpSubdir.PLAY);
+        // The entries are read in place, the video data is memory mapped
+        final ConquadeEvents.Archive openEvent = new ConquadeEvents.Archive();
+        openEvent.begin();
+        try (final TarFile tarFile = new TarFile(inputFile);
+             final FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            openEvent.commit("open", inputFile, "", inputFile.length());
+            final TarArchiveEntry videoEntry = findEntry(tarFile, Conquade.VIDEO_ENTRY);
+            if (videoEntry == null)
+                throw new IllegalArgumentException("The input file does not contain video data!");
+            final TarArchiveEntry audioEntry = findEntry(tarFile, Conquade.AUDIO_ENTRY);
+            final TarArchiveEntry indexEntry = findEntry(tarFile, Conquade.INDEX_ENTRY);
 
-        Conquade.LOGGER.info("Unpacking video and audio...");
+            VideoIndex index = null;
+            if (indexEntry != null) {
+                final ConquadeEvents.Archive indexEvent = new ConquadeEvents.Archive();
+                indexEvent.begin();
+                try (final DataInputStream indexStream = new DataInputStream(new BufferedInputStream(tarFile.getInputStream(indexEntry)))) {
+                    index = VideoIndex.read(indexStream);
+                }
+                indexEvent.commit("unpack", inputFile, Conquade.INDEX_ENTRY, indexEntry.getSize());
+            }
 
-        final File videoFile;
-        File audioFile = null;
-        final boolean hasAudio;
-        try {
-            final TarArchiveInputStream tarStream = new TarArchiveInputStream(new FileInputStream(inputFile));
-            // video entry
-            final TarArchiveEntry videoEntry = tarStream.getNextTarEntry();
-            videoFile = Path.of(playerTmpDir.getAbsolutePath(), videoEntry.getName()).toFile();
-            try {
-                boolean ignored = videoFile.createNewFile();
-            } catch (IOException e) {
-                throw new IllegalStateException("Could not create video data file (\"%s\")!".formatted(videoFile.getAbsolutePath()), e);
+            // The audio is streamed from the mapped file as it plays
+            AudioPlayer audio = null;
+            if (audioEntry != null && args.doPlayAudio()) {
+                audio = AudioPlayer.open(new MappedInputStream(channel, audioEntry.getDataOffset(), audioEntry.getSize()));
+            } else if (args.doPlayAudio()) {
+                Conquade.LOGGER.warning("The input file does not contain audio!");
             }
-            IOUtils.copy(tarStream, new FileOutputStream(videoFile));
-            // audio entry
-            final TarArchiveEntry audioEntry = tarStream.getNextTarEntry();
-            hasAudio = audioEntry != null && args.doPlayAudio();
-            if (hasAudio) {
-                audioFile = Path.of(playerTmpDir.getAbsolutePath(), audioEntry.getName()).toFile();
-                try {
-                    boolean ignored = audioFile.createNewFile();
-                } catch (IOException e) {
-                    throw new IllegalStateException("Could not create audio file (\"%s\")!".formatted(audioFile.getAbsolutePath()), e);
-                }
-                IOUtils.copy(tarStream, new FileOutputStream(audioFile));
+
+            try (final AudioPlayer audioPlayer = audio;
+                 final VideoReader videoReader = new VideoReader(
+                         new MappedInputStream(channel, videoEntry.getDataOffset(), videoEntry.getSize()), index)) {
+                handler.play(videoReader, audioPlayer);
             }
         } catch (IOException e) {
-            throw new IllegalStateException("Could not unpack input file (\"%s\")!"
+            throw new IllegalStateException("Could not read input file (\"%s\")!"
                     .formatted(inputFile.getAbsolutePath()), e);
         }
-        Conquade.LOGGER.info("Video and audio unpacked.");
-
-        Clip clip = null;
-        if (hasAudio) {
-            clip = clipAudio(audioFile);
-            clip.start();
-        } else if (args.doPlayAudio()) {
-            Conquade.LOGGER.warning("The input file does not contain audio!");
-        }
+    }
 
-        try (final DataInputStream dis = new DataInputStream(new FileInputStream(videoFile))) {
-            final int fps = dis.read();
-            final int width = dis.readInt();
-            final int height = dis.readInt();
-            final boolean trueColor = dis.readBoolean();
+    private void play(final @NotNull PlayArgs args, final @NotNull VideoReader videoReader, final @Nullable AudioPlayer audio) throws IOException {
+        final VideoHeader header = videoReader.getHeader();
+        final int fps = header.getFps();
+        final int width = header.getWidth();
+        final int height = header.getHeight();
+        final boolean trueColor = header.isTrueColor();
 
+        try {
             if (trueColor && !Conquade.trueColor)
                 throw new IllegalArgumentException("The video is rendered for a true color terminal, but -256 argument was used!");
 
@@ -114,40 +144,374 @@ public enum Player {
                         Conquade.TERMINAL_HEIGHT
                 ));
 
+            final long startTime = args.getStartTime();
+            if (startTime != 0 && !videoReader.isSeekable())
+                throw new IllegalArgumentException("The video has no frame index, it can not be played from the start time (-ss)!");
+
+            final FrameEncoder encoder = createEncoder(args, header);
+            final PlaybackClock clock = new PlaybackClock(fps, audio);
+            final PlaybackStats stats = new PlaybackStats(width, height, fps, clock);
+
             hookToShutdown();
+            final File reportFile = args.getReportFile();
+            if (reportFile != null) // also when the playback is quit
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> stats.writeReport(reportFile, args.getInputFile())));
             Conquade.LOGGER.info("Playing the video...");
             Conquade.disableLogger();
             System.out.println(AnsiHelper.HIDE_CURSOR);
+            final FrameSink frameSink = new FrameSink(args.doSynchronizedOutput());
 
-            while (true) {
-                final long startTimeStamp = System.currentTimeMillis();
-                final byte[] data = trueColor
-                        ? dis.readNBytes(width * height * 4)
-                        : dis.readNBytes(width * height * 2);
-                if (data.length == 0) break;
-                final String frame = trueColor
-                        ? readFrameRGB(data, width, height, args.getColorTarget())
-                        : readFrame256(data, width, height, args.getColorTarget());
-                printFrame(frame, height);
-                if (hasAudio) clip.start();
-                long sleep = Math.round(1000D / fps) - (System.currentTimeMillis() - startTimeStamp);
-                if (sleep < 0 && hasAudio) {
-                    clip.stop();
-                } else {
-                    Thread.sleep(Math.max(0, sleep));
-                }
+            final Attributes terminalAttributes = Conquade.TERMINAL.enterRawMode(); // read keys without enter
+            final KeyReader keyReader = new KeyReader(Conquade.TERMINAL.reader());
+            keyReader.start();
+            try {
+                playFrames(args, videoReader, encoder, frameSink, clock, stats, keyReader::poll);
+            } finally {
+                keyReader.close();
+                Conquade.TERMINAL.setAttributes(terminalAttributes);
             }
+            stats.clearOverlay();
             cleanup();
             Conquade.enableLogger();
-            Conquade.LOGGER.info("Video finished!");
-        } catch (IOException e) {
-            throw new IllegalStateException("Could not read video data file (\"%s\")!"
-                    .formatted(videoFile.getAbsolutePath()), e);
+            Conquade.LOGGER.info("Video finished! %d late frames were dropped.".formatted(clock.getDroppedFrames()));
+            if (args.doShowStats()) Conquade.LOGGER.info(stats.getSummary());
+            if (reportFile != null) {
+                stats.writeReport(reportFile, args.getInputFile());
+                Conquade.LOGGER.info("Stats report written (\"%s\").".formatted(reportFile.getAbsolutePath()));
+            }
         } catch (InterruptedException e) {
             throw new IllegalStateException("Thread sleep interrupted!", e);
         }
     }
 
+    /**
+     * Creates the encoder of the video frames.
+     *
+     * @param args   the play args
+     * @param header the header of the video
+     * @return the encoder or null when the video is baked and its frames are printed as they are
+     * @throws IllegalArgumentException when the video is baked for another color target
+     */
+    @Nullable FrameEncoder createEncoder(final @NotNull PlayArgs args, final @NotNull VideoHeader header) {
+        // Baked frames are printed as they are, there is nothing to encode
+        final Player.ColorTarget bakedColorTarget = header.getBakedColorTarget();
+        if (bakedColorTarget != null && args.hasColorTarget() && args.getColorTarget() != bakedColorTarget)
+            throw new IllegalArgumentException("The video is baked for color target %s, but -color %s argument was used!"
+                    .formatted(bakedColorTarget, args.getColorTarget()));
+        if (bakedColorTarget != null && args.doDelta())
+            Conquade.LOGGER.warning("The video is baked, whole frames will be printed (-delta is ignored).");
+        return bakedColorTarget != null ? null : new FrameEncoder(header.getWidth(), header.getHeight(), header.isTrueColor(),
+                args.getColorTarget(), args.doDelta(), args.getRedrawInterval());
+    }
+
+    /**
+     * Plays the video frames from the start time of the args until the video ends.
+     * <p>Frames are read and encoded ahead by a producer thread, this thread only prints them to the frame sink
+     * when the clock says they are due. The controls are polled before every frame.</p>
+     *
+     * @param args        the play args
+     * @param videoReader the reader of the video data
+     * @param encoder     the encoder of the frames or null when the video is baked
+     * @param frameSink   the sink to print the frames to
+     * @param clock       the clock deciding when a frame is printed, the playback starts with the first frame
+     * @param stats       the stats to record the playback to
+     * @param controls    the source of the playback controls
+     * @throws IOException           when the start time could not be seeked to
+     * @throws InterruptedException  when interrupted while paused or waiting for the producer
+     * @throws IllegalStateException when the frames could not be read
+     */
+    void playFrames(final @NotNull PlayArgs args, final @NotNull VideoReader videoReader, final @Nullable FrameEncoder encoder,
+                    final @NotNull FrameSink frameSink, final @NotNull PlaybackClock clock, final @NotNull PlaybackStats stats,
+                    final @NotNull Supplier<Control> controls) throws IOException, InterruptedException {
+        final int fps = videoReader.getHeader().getFps();
+        final byte[] data = new byte[videoReader.getHeader().getFrameDataSize()];
+        final long startTime = args.getStartTime();
+        if (startTime != 0) {
+            videoReader.seek(startTime * fps / 1000, data);
+            clock.seek(videoReader.getFrameId());
+        }
+
+        // Frames are read and encoded ahead by the producer, this thread only prints them
+        final FrameRing ring = new FrameRing(args.getBufferSize());
+        final FrameProducer producer = new FrameProducer(videoReader, encoder, data, ring, clock, stats);
+        // Late frames are dropped by the producer before encoding, this thread may drop only independent frames
+        final boolean independentFrames = encoder == null || !args.doDelta();
+
+        producer.start();
+        try {
+            boolean paused = false;
+            int epoch = 0;
+            long nextFrameId = videoReader.getFrameId();
+            while (true) {
+                final int seekDirection = switch (controls.get()) {
+                    case FORWARD -> 1;
+                    case BACKWARD -> -1;
+                    case PAUSE -> {
+                        paused = !paused;
+                        if (paused) clock.pause(); // resumed when the next frame is taken
+                        yield 0;
+                    }
+                    case NONE -> 0;
+                };
+                final boolean seeked = seekDirection != 0 && videoReader.isSeekable();
+                if (seeked) {
+                    nextFrameId = Math.max(0, Math.min(nextFrameId + (long) seekDirection * SEEK_STEP * fps,
+                            videoReader.getFrameCount()));
+                    producer.requestSeek(nextFrameId, ++epoch);
+                    clock.seek(nextFrameId);
+                }
+                if (paused && !seeked) {
+                    Thread.sleep(PAUSE_POLL_INTERVAL);
+                    continue;
+                }
+                final FrameRing.Slot slot = takeFrame(ring, epoch);
+                if (slot == null) break;
+                final long frameId = slot.getFrameId();
+                nextFrameId = frameId + 1;
+                if (!paused) { // when paused, only show where the video was moved
+                    clock.start(); // the first frame is ready
+                    if (independentFrames && clock.isLate(frameId)) {
+                        clock.dropFrame();
+                        ring.release();
+                        continue;
+                    }
+                    clock.awaitFrame(frameId);
+                    stats.recordLag(frameId);
+                }
+                final AnsiBuffer frame = slot.getFrame();
+                if (args.doShowStats()) stats.appendOverlay(frame);
+                final ConquadeEvents.FrameWrite writeEvent = new ConquadeEvents.FrameWrite();
+                writeEvent.begin();
+                final long writeTime = System.nanoTime();
+                frameSink.write(frame);
+                stats.record(PlaybackStats.Stage.WRITE, writeTime);
+                writeEvent.commit(frameId, frame.length());
+                stats.countFrame(frame.length());
+                ring.release();
+            }
+        } finally {
+            ring.close();
+            producer.join();
+        }
+        final Exception producerException = producer.exception;
+        if (producerException != null)
+            throw new IllegalStateException("Could not read the video frames!", producerException);
+    }
+
+    /**
+     * Takes the next frame from the ring, skipping the frames produced before the last seek.
+     *
+     * @param ring  the ring to take from
+     * @param epoch the current epoch
+     * @return the slot of the frame or null when there are no more frames
+     */
+    private @Nullable FrameRing.Slot takeFrame(final @NotNull FrameRing ring, final int epoch) {
+        while (true) {
+            final FrameRing.Slot slot = ring.take();
+            if (slot == null || slot.getEpoch() == epoch) return slot;
+            ring.release();
+        }
+    }
+
+    /**
+     * A thread reading and encoding frames ahead of the playback into a {@link FrameRing}.
+     */
+    private static final class FrameProducer extends Thread {
+        private final @NotNull VideoReader videoReader;
+        private final @Nullable FrameEncoder encoder;
+        private final byte @NotNull [] frameData;
+        private final @NotNull FrameRing ring;
+        private final @NotNull PlaybackClock clock;
+        private final @NotNull PlaybackStats stats;
+        private volatile long seekFrameId;
+        private volatile int seekEpoch = 0;
+        private volatile @Nullable Exception exception;
+
+        private FrameProducer(final @NotNull VideoReader videoReader, final @Nullable FrameEncoder encoder,
+                              final byte @NotNull [] frameData, final @NotNull FrameRing ring,
+                              final @NotNull PlaybackClock clock, final @NotNull PlaybackStats stats) {
+            super("frame-producer");
+            setDaemon(true);
+            this.videoReader = videoReader;
+            this.encoder = encoder;
+            this.frameData = frameData;
+            this.ring = ring;
+            this.clock = clock;
+            this.stats = stats;
+        }
+
+        /**
+         * Asks the producer to continue from another frame. The frames produced after the request have the new epoch.
+         *
+         * @param frameId the id of the frame to continue from
+         * @param epoch   the new epoch
+         */
+        private void requestSeek(final long frameId, final int epoch) {
+            seekFrameId = frameId; // written before the epoch, so the producer never sees the new epoch with an old frame
+            seekEpoch = epoch;
+        }
+
+        @Override
+        public void run() {
+            int epoch = 0;
+            try {
+                while (true) {
+                    final FrameRing.Slot slot = ring.claim();
+                    if (slot == null) return; // the playback ended
+                    final int seekEpoch = this.seekEpoch;
+                    if (seekEpoch != epoch) {
+                        videoReader.seek(seekFrameId, frameData);
+                        if (encoder != null) encoder.requestRedraw();
+                        epoch = seekEpoch;
+                    }
+                    final long frameId = videoReader.getFrameId();
+                    slot.setFrameId(frameId);
+                    slot.setEpoch(epoch);
+                    final ConquadeEvents.FrameRead readEvent = new ConquadeEvents.FrameRead();
+                    readEvent.begin();
+                    final long readTime = System.nanoTime();
+                    if (!(encoder == null ? videoReader.readFrame(slot.getFrame()) : videoReader.readFrame(frameData))) break;
+                    final long encodeTime = stats.record(PlaybackStats.Stage.READ, readTime);
+                    readEvent.commit(frameId, encoder == null ? slot.getFrame().length() : frameData.length);
+                    if (clock.isLate(frameId)) { // skipped before encoding, so the encoder diffs only against printed frames
+                        clock.dropFrame();
+                        continue; // the slot stays claimed
+                    }
+                    if (encoder != null) {
+                        final ConquadeEvents.FrameEncode encodeEvent = new ConquadeEvents.FrameEncode();
+                        encodeEvent.begin();
+                        encoder.encodeFrame(frameData, slot.getFrame().clear());
+                        stats.record(PlaybackStats.Stage.ENCODE, encodeTime);
+                        encodeEvent.commit(frameId, slot.getFrame().length());
+                    }
+                    ring.publish();
+                }
+            } catch (Exception e) {
+                exception = e;
+            }
+            ring.finish();
+        }
+    }
+
+    /**
+     * A thread reading the pressed playback control keys, so the playback never waits for the terminal input.
+     */
+    private static final class KeyReader extends Thread {
+        private static final int ESC = 27;
+        /**
+         * How long to wait for a key before checking whether the reader was closed in milliseconds.
+         */
+        private static final long READ_TIMEOUT = 50;
+        /**
+         * How long to wait for the rest of an escape sequence in milliseconds.
+         */
+        private static final long ESCAPE_TIMEOUT = 10;
+
+        private final @NotNull NonBlockingReader reader;
+        private final @NotNull Queue<Control> controls = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed = false;
+
+        private KeyReader(final @NotNull NonBlockingReader reader) {
+            super("key-reader");
+            setDaemon(true);
+            this.reader = reader;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    final int key = reader.read(READ_TIMEOUT);
+                    if (key == NonBlockingReader.EOF) return;
+                    if (key == ' ') {
+                        controls.add(Control.PAUSE);
+                    } else if (key == ESC && reader.peek(ESCAPE_TIMEOUT) == '[') { // arrow keys are sent as ESC [ C/D
+                        reader.read(ESCAPE_TIMEOUT); // the [
+                        switch (reader.read(ESCAPE_TIMEOUT)) {
+                            case 'C' -> controls.add(Control.FORWARD);
+                            case 'D' -> controls.add(Control.BACKWARD);
+                            default -> { // another escape sequence
+                            }
+                        }
+                    } // after a lone ESC, the next key is read as a key of its own
+                }
+            } catch (IOException ignored) {
+                // the keys can not be read, the video plays on without the controls
+            }
+        }
+
+        /**
+         * Returns the next pressed playback control without blocking.
+         *
+         * @return the control of the pressed key or {@link Control#NONE} when no control key was pressed
+         */
+        private @NotNull Control poll() {
+            final Control control = controls.poll();
+            return control == null ? Control.NONE : control;
+        }
+
+        /**
+         * Stops reading the keys and waits for the thread to finish, so the terminal input can be used again.
+         *
+         * @throws InterruptedException when interrupted while waiting
+         */
+        private void close() throws InterruptedException {
+            closed = true;
+            join();
+        }
+    }
+
+    /**
+     * A playback control triggered by a key.
+     */
+    enum Control {
+        /**
+         * No control key was pressed.
+         */
+        NONE,
+        /**
+         * Pause or resume the video (space).
+         */
+        PAUSE,
+        /**
+         * Move the video {@link Player#SEEK_STEP} seconds forward (right arrow).
+         */
+        FORWARD,
+        /**
+         * Move the video {@link Player#SEEK_STEP} seconds backward (left arrow).
+         */
+        BACKWARD
+    }
+
+    /**
+     * Plays the opened video, see {@link Player#open(PlayArgs, VideoHandler)}.
+     */
+    @FunctionalInterface
+    interface VideoHandler {
+        /**
+         * Plays the video.
+         *
+         * @param videoReader the reader of the video data
+         * @param audio       the audio or null when the video is played without audio
+         * @throws IOException when the video could not be read
+         */
+        void play(final @NotNull VideoReader videoReader, final @Nullable AudioPlayer audio) throws IOException;
+    }
+
+    /**
+     * Finds a regular file entry in a tar file.
+     *
+     * @param tarFile the tar file to search
+     * @param name    the name of the entry
+     * @return the entry or null if the tar file does not contain it
+     */
+    private @Nullable TarArchiveEntry findEntry(final @NotNull TarFile tarFile, final @NotNull String name) {
+        return tarFile.getEntries().stream()
+                .filter(entry -> entry.isFile() && entry.getName().equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
     /**
      * Transforms the {@link ConquadeArgs} to {@link PlayArgs} and plays the video.
      *
@@ -168,25 +532,8 @@ public enum Player {
      */
     public @NotNull String readFrame256(final byte @NotNull [] frameData, final int width, final int height,
                                         final @NotNull Player.ColorTarget colorTarget) {
-        if (frameBuilder == null)
-            frameBuilder = new StringBuilder(width * height);
-        frameBuilder.setLength(0);
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                final int pixel = 2 * (y * width + x);
-                final char content = Conquade.CHARACTERS_ARRAY[frameData[pixel]];
-                int color = frameData[pixel + 1]; // hidden cast from byte to int, negative bytes stay negative!
-                if (color < 0) color += 256; // negative bytes need to be moved to positive
-                switch (colorTarget) {
-                    case TEXT_ONLY -> frameBuilder.append(AnsiChar.literal256(content, color));
-                    case HIGHLIGHT_ONLY -> frameBuilder.append(AnsiChar.literal256(' ', -1, color));
-                    case BLACK_TEXT -> frameBuilder.append(AnsiChar.literal256(content, 0, color));
-                }
-            }
-            frameBuilder.append('\n');
-        }
-        frameBuilder.setLength(frameBuilder.length() - 1);
-        return frameBuilder.toString();
+        new FrameEncoder(width, height, false, colorTarget).encode(frameData, frameBuffer.clear());
+        return frameBuffer.toString();
     }
 
     /**
@@ -200,38 +547,8 @@ public enum Player {
      */
     public @NotNull String readFrameRGB(final byte @NotNull [] frameData, final int width, final int height,
                                         final @NotNull Player.ColorTarget colorTarget) {
-        if (frameBuilder == null)
-            frameBuilder = new StringBuilder(width * height);
-        frameBuilder.setLength(0);
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                final int pixel = 4 * (y * width + x);
-                final char content = Conquade.CHARACTERS_ARRAY[frameData[pixel]];
-                int red = frameData[pixel + 1];
-                int green = frameData[pixel + 2];
-                int blue = frameData[pixel + 3];
-                // negative bytes need to be moved to positive
-                if (red < 0) red += 256;
-                if (green < 0) green += 256;
-                if (blue < 0) blue += 256;
-                switch (colorTarget) {
-                    case TEXT_ONLY -> frameBuilder.append(AnsiChar.literalRGB(content, red, green, blue));
-                    case HIGHLIGHT_ONLY -> frameBuilder.append(
-                            AnsiChar.literalRGB(' ',
-                                    -1, -1, -1,
-                                    red, green, blue
-                            ));
-                    case BLACK_TEXT -> frameBuilder.append(
-                            AnsiChar.literalRGB(content,
-                                    0, 0, 0,
-                                    red, green, blue
-                            ));
-                }
-            }
-            frameBuilder.append('\n');
-        }
-        frameBuilder.setLength(frameBuilder.length() - 1);
-        return frameBuilder.toString();
+        new FrameEncoder(width, height, true, colorTarget).encode(frameData, frameBuffer.clear());
+        return frameBuffer.toString();
     }
 
 
@@ -275,23 +592,6 @@ public enum Player {
         System.out.print(AnsiHelper.moveCursorUp(height - 1));
     }
 
-    /**
-     * Returns an audio clip with the sound read from the provided file.
-     *
-     * @param audioFile the file to read sound from
-     * @return the clip with opened sound
-     * @throws IllegalStateException when the audio clip could not be created
-     */
-    public @NotNull Clip clipAudio(final @NotNull File audioFile) {
-        try {
-            final Clip clip = AudioSystem.getClip();
-            clip.open(AudioSystem.getAudioInputStream(audioFile));
-            return clip;
-        } catch (LineUnavailableException | UnsupportedAudioFileException | IOException e) {
-            throw new IllegalStateException("Could not create audio clip!", e);
-        }
-    }
-
     /**
      * {@link ConquadeArgs} wrapper for the {@link Player}.
      */
@@ -300,6 +600,14 @@ public enum Player {
         private boolean ignoreResolution = false;
         private boolean playAudio = true;
         private @NotNull ColorTarget colorTarget = ColorTarget.TEXT_ONLY;
+        private boolean colorTargetSet = false;
+        private boolean delta = false;
+        private int redrawInterval = DEFAULT_REDRAW_INTERVAL;
+        private long startTime = 0;
+        private boolean synchronizedOutput = false;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private boolean showStats = false;
+        private @Nullable File reportFile;
 
         /**
          * Read the args and construct a new {@link PlayArgs}, wrapping them.
@@ -336,7 +644,41 @@ public enum Player {
                     throw new IllegalArgumentException("Color argument is not valid! " +
                             "Valid color targets are: " + Arrays.toString(ColorTarget.values()), e);
                 }
+                colorTargetSet = true;
+            }
+            // Delta output
+            if (argMap.containsKey("delta")) {
+                delta = true;
+                redrawInterval = parseRedrawInterval(argMap.get("delta"));
             }
+            // Start time
+            final String startTimeStr = argMap.get("ss");
+            if (startTimeStr != null) {
+                startTime = parseTime(startTimeStr);
+                Conquade.LOGGER.fine("The video will be played from %d ms (-ss).".formatted(startTime));
+            }
+            // Synchronized output
+            if (argMap.containsKey("sync")) {
+                synchronizedOutput = true;
+                Conquade.LOGGER.fine("Frames will be printed as synchronized updates (-sync).");
+            }
+            // Buffer size
+            final String bufferSizeStr = argMap.get("buffer");
+            if (bufferSizeStr == null) {
+                Conquade.LOGGER.fine("Frame buffer size defaulted to %d frames.".formatted(bufferSize));
+            } else {
+                try {
+                    bufferSize = Integer.parseInt(bufferSizeStr);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Buffer argument value is not a valid number!", e);
+                }
+                if (bufferSize < 1)
+                    throw new IllegalArgumentException("Buffer argument value must be a positive number!");
+                Conquade.LOGGER.fine("Frame buffer size set to %d frames.".formatted(bufferSize));
+            }
+            // Stats
+            showStats = parseShowStats(argMap);
+            reportFile = parseReportFile(argMap);
         }
 
 
@@ -375,5 +717,156 @@ public enum Player {
         public @NotNull ColorTarget getColorTarget() {
             return colorTarget;
         }
+
+        /**
+         * Returns whether the color target was set by the -color argument.
+         *
+         * @return whether the color target was set
+         */
+        public boolean hasColorTarget() {
+            return colorTargetSet;
+        }
+
+        /**
+         * Returns whether to print only the cells that changed since the previous frame.
+         *
+         * @return whether to use delta output
+         */
+        public boolean doDelta() {
+            return delta;
+        }
+
+        /**
+         * Returns after how many frames the whole frame is redrawn in delta output mode, 0 means never.
+         *
+         * @return the redraw interval in frames
+         */
+        public int getRedrawInterval() {
+            return redrawInterval;
+        }
+
+        /**
+         * Returns the time in the video to start playing from in milliseconds.
+         *
+         * @return the start time
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns whether to wrap every frame in a synchronized update, so the terminal never shows a half drawn frame.
+         *
+         * @return whether to use synchronized output
+         */
+        public boolean doSynchronizedOutput() {
+            return synchronizedOutput;
+        }
+
+        /**
+         * Returns how many frames are read and encoded ahead of the playback.
+         *
+         * @return the frame buffer size
+         */
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        /**
+         * Returns whether to show the playback stats overlay below the frames (see {@link PlaybackStats}).
+         *
+         * @return whether to show the stats
+         */
+        public boolean doShowStats() {
+            return showStats;
+        }
+
+        /**
+         * Returns the file to write the JSON playback stats report to when the playback ends.
+         *
+         * @return the report file or null when no report should be written
+         */
+        public @Nullable File getReportFile() {
+            return reportFile;
+        }
+    }
+
+    /**
+     * Parses a time in seconds ({@code 90}, {@code 90.5}), minutes and seconds ({@code 1:30})
+     * or hours, minutes and seconds ({@code 1:01:30}).
+     *
+     * @param timeStr the time to parse
+     * @return the time in milliseconds
+     * @throws IllegalArgumentException when the time is not valid
+     */
+    public static long parseTime(final @NotNull String timeStr) {
+        final String[] parts = timeStr.split(":");
+        if (parts.length > 3)
+            throw new IllegalArgumentException("Time (\"%s\") is not valid!".formatted(timeStr));
+        double seconds = 0;
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                final double part = i == parts.length - 1 ? Double.parseDouble(parts[i]) : Integer.parseInt(parts[i]);
+                if (part < 0 || Double.isNaN(part) || Double.isInfinite(part))
+                    throw new IllegalArgumentException("Time (\"%s\") is not valid!".formatted(timeStr));
+                seconds = seconds * 60 + part;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Time (\"%s\") is not valid!".formatted(timeStr), e);
+        }
+        return Math.round(seconds * 1000);
+    }
+
+    /**
+     * Parses the -stats argument.
+     *
+     * @param argMap the argument map
+     * @return whether to show the playback stats overlay
+     */
+    public static boolean parseShowStats(final @NotNull Map<String, String> argMap) {
+        if (!argMap.containsKey("stats")) return false;
+        Conquade.LOGGER.fine("Playback stats will be shown below the frames (-stats).");
+        return true;
+    }
+
+    /**
+     * Parses the -report argument.
+     *
+     * @param argMap the argument map
+     * @return the file to write the playback stats report to or null when no report should be written
+     * @throws IllegalArgumentException when the argument has no value
+     */
+    public static @Nullable File parseReportFile(final @NotNull Map<String, String> argMap) {
+        if (!argMap.containsKey("report")) return null;
+        final String reportFilePath = argMap.get("report");
+        if (reportFilePath == null)
+            throw new IllegalArgumentException("Missing report file path (-report)!");
+        final File reportFile = new File(reportFilePath);
+        Conquade.LOGGER.fine("Playback stats report will be written to \"%s\" (-report).".formatted(reportFile.getAbsolutePath()));
+        return reportFile;
+    }
+
+    /**
+     * Parses the value of the -delta argument.
+     *
+     * @param redrawIntervalStr the argument value, may be null
+     * @return the redraw interval in frames
+     * @throws IllegalArgumentException when the value is not a valid redraw interval
+     */
+    public static int parseRedrawInterval(final @Nullable String redrawIntervalStr) {
+        if (redrawIntervalStr == null) {
+            Conquade.LOGGER.fine("Delta output enabled, redraw interval defaulted to %d frames (-delta).".formatted(DEFAULT_REDRAW_INTERVAL));
+            return DEFAULT_REDRAW_INTERVAL;
+        }
+        final int redrawInterval;
+        try {
+            redrawInterval = Integer.parseInt(redrawIntervalStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Delta argument value is not a valid number!", e);
+        }
+        if (redrawInterval < 0)
+            throw new IllegalArgumentException("Delta argument value must not be negative!");
+        Conquade.LOGGER.fine("Delta output enabled, redraw interval set to %d frames (-delta).".formatted(redrawInterval));
+        return redrawInterval;
     }
 }
@@ -0,0 +1,163 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * Reports the progress of a render to the standard output, either as a progress bar or as JSON lines.
+ * <p>The render speed is an exponentially weighted moving average of the frames per second measured between
+ * the reports, so the ETA follows speed changes without jumping with every report.</p>
+ * <p>A JSON line is written every {@link RenderProgress#REPORT_INTERVAL}, for example:</p>
+ * <pre>{@code
+ * {"frames": 1500, "total": 4500, "fps": 52.10, "averageFps": 49.87, "bytes": 10485760, "etaSeconds": 58, "done": false}
+ * }</pre>
+ * <p>{@code fps} is the speed since the last report, {@code averageFps} the speed since the render started,
+ * {@code total} is an estimate until the render is done and {@code etaSeconds} is -1 while the speed is unknown.
+ * When the total is not known (ffmpeg did not report the duration of the video), {@code total} is {@code null}
+ * and {@code etaSeconds} is -1 until the render is done, the progress bar shows {@code ?} instead.</p>
+ */
+public final class RenderProgress {
+    /**
+     * How often the progress is reported in nanoseconds.
+     */
+    public static final long REPORT_INTERVAL = 1_000_000_000L; // 1 second
+    /**
+     * The time constant of the moving average of the render speed in seconds, the older speeds are forgotten
+     * by {@code 1 / e} every this many seconds.
+     */
+    public static final double SMOOTHING_TIME = 5;
+
+    private final @NotNull Mode mode;
+    private final int width;
+    private final long startTime = System.nanoTime();
+    private long reportTime = startTime;
+    private long reportFrames = 0;
+    private double fps = 0;
+    private double smoothedFps = -1; // unknown
+    private final @NotNull StringBuilder etaBuilder = new StringBuilder();
+
+    /**
+     * Creates a new {@link RenderProgress} and starts measuring the render speed.
+     *
+     * @param mode  how to report the progress
+     * @param width the width of the progress bar
+     */
+    public RenderProgress(final @NotNull Mode mode, final int width) {
+        this.mode = mode;
+        this.width = width;
+        if (mode == Mode.BAR) {
+            System.out.printf("%s%n| LOADING |%n%n".formatted(
+                    AnsiHelper.foregroundColor256(AnsiHelper.toAnsi256(0, 255, 255)) // aqua
+            ));
+        }
+    }
+
+    /**
+     * Reports the progress, if the last report is older than {@link RenderProgress#REPORT_INTERVAL}.
+     *
+     * @param frames the number of rendered frames
+     * @param total  the estimated total number of frames, 0 or less when it is not known
+     * @param bytes  the number of written video data bytes
+     */
+    public void update(final long frames, final long total, final long bytes) {
+        final long now = System.nanoTime();
+        if (now - reportTime < REPORT_INTERVAL) return;
+        measure(frames, now);
+        report(frames, total > 0 ? Math.max(frames, total) : -1, bytes, false);
+    }
+
+    /**
+     * Reports the finished render.
+     *
+     * @param frames the number of rendered frames
+     * @param bytes  the number of written video data bytes
+     */
+    public void finish(final long frames, final long bytes) {
+        measure(frames, System.nanoTime());
+        report(frames, frames, bytes, true);
+    }
+
+    private void measure(final long frames, final long now) {
+        final double seconds = (now - reportTime) / 1e9;
+        if (seconds > 0) {
+            fps = (frames - reportFrames) / seconds;
+            // The weight of the new speed depends on the time it was measured for, so irregular reports are fine
+            smoothedFps = smoothedFps < 0 ? fps : smoothedFps + (1 - Math.exp(-seconds / SMOOTHING_TIME)) * (fps - smoothedFps);
+        }
+        reportTime = now;
+        reportFrames = frames;
+    }
+
+    // total is -1 when it is not known
+    private void report(final long frames, final long total, final long bytes, final boolean done) {
+        final double averageFps = frames / ((reportTime - startTime) / 1e9);
+        final long eta = done ? 0 : total >= 0 && smoothedFps > 0 ? Math.round((total - frames) / smoothedFps) : -1;
+        switch (mode) {
+            case BAR -> printBar(frames, total, eta);
+            case JSON -> {
+                System.out.println(String.format(Locale.ROOT,
+                        "{\"frames\": %d, \"total\": %s, \"fps\": %.2f, \"averageFps\": %.2f, \"bytes\": %d, \"etaSeconds\": %d, \"done\": %b}",
+                        frames, total < 0 ? "null" : total, fps, Double.isFinite(averageFps) ? averageFps : 0, bytes, eta, done));
+                System.out.flush();
+            }
+        }
+    }
+
+    private void printBar(final long frames, final long total, final long eta) {
+        // the bar stays empty while the total is not known
+        final double percentage = total < 0 ? 0 : total == 0 ? 1 : frames / (double) total;
+
+        // eta
+        etaBuilder.setLength(0); // clear etaBuilder
+        long seconds = Math.max(0, eta);
+        final long hours = seconds / 3600;
+        if (hours > 0) {
+            etaBuilder.append(hours).append("hrs ");
+            seconds -= hours * 3600;
+        }
+        final long minutes = seconds / 60;
+        if (hours > 0 || minutes > 0) {
+            etaBuilder.append(minutes).append("min ");
+            seconds -= minutes * 60;
+        }
+        etaBuilder.append(seconds).append("sec");
+
+        final String loadbar = "=".repeat(Math.max(0, (int) (width * percentage) - 1)) + ">";
+
+        System.out.print(AnsiHelper.moveCursorUp(3));
+        System.out.println(AnsiHelper.CLEAR_LINE + loadbar);
+        System.out.printf(AnsiHelper.CLEAR_LINE + "| RENDERING | %s%% | %d/%s frames | %s FPS | %s ETA |%n",
+                total < 0 ? "?" : ConquadeLogFormatter.DECIMAL_FORMATTER.format(percentage * 100),
+                frames,
+                total < 0 ? "?" : total,
+                ConquadeLogFormatter.DECIMAL_FORMATTER.format(Math.max(0, smoothedFps)),
+                eta < 0 ? "?" : etaBuilder
+        );
+        System.out.println(AnsiHelper.CLEAR_LINE + loadbar);
+    }
+
+    /**
+     * How the render progress is reported.
+     */
+    public enum Mode {
+        /**
+         * Draw a progress bar in the terminal.
+         */
+        BAR,
+        /**
+         * Print a JSON object with the progress on every line, for other programs to read.
+         */
+        JSON;
+
+        /**
+         * Returns the lowercase enum constant name.
+         *
+         * @return {@link Enum#name()} but lowercase
+         */
+        @Override
+        public @NotNull String toString() {
+            return name().toLowerCase();
+        }
+    }
+}
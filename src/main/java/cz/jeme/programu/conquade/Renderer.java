@@ -4,14 +4,20 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.awt.image.*;
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A singleton class used to render video files into Conquade video files.
@@ -23,17 +29,45 @@ public enum Renderer {
     INSTANCE;
 
     /**
-     * Returns the number of .jpg frames in the provided directory.
-     *
-     * @param inputDir the directory to search frames in
-     * @return the frame count
+     * The compression level used when -compress is passed without a level.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    /**
+     * The index of the character in {@link Conquade#CHARACTERS} for every luma value (0 - 255),
+     * the whole luma range is spread over all the characters.
+     */
+    private static final byte @NotNull [] LUMA_GLYPHS = new byte[256];
+
+    static {
+        final int maxIndex = Conquade.CHARACTERS.length() - 1;
+        for (int luma = 0; luma < LUMA_GLYPHS.length; luma++)
+            LUMA_GLYPHS[luma] = (byte) ((luma * maxIndex + 127) / 255); // rounded
+    }
+
+    /**
+     * The Vector API frame conversion or null when the {@code jdk.incubator.vector} module is not available
+     * (run with {@code --add-modules jdk.incubator.vector} to enable it) or the CPU vectors are too small,
+     * then the scalar conversion is used.
      */
-    public int getFrameCount(final @NotNull File inputDir) {
-        return Arrays.stream(Objects.requireNonNull(inputDir.list()))
-                .filter(name -> name.endsWith(".jpg"))
-                .mapToInt(name -> Integer.parseInt(name.substring(0, name.length() - 4))) // remove ".jpg"
-                .max()
-                .orElse(0);
+    private static final @Nullable FrameConverter VECTOR_CONVERTER = loadVectorConverter();
+
+    private static @Nullable FrameConverter loadVectorConverter() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try { // loaded reflectively, so the class is never touched without the module
+            final FrameConverter converter = (FrameConverter) Class.forName("cz.jeme.programu.conquade.VectorFrameConverter")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            Conquade.LOGGER.fine("Using the %s frame conversion.".formatted(converter));
+            return converter;
+        } catch (InvocationTargetException e) { // the vectors are too small
+            Conquade.LOGGER.fine("Not using the Vector API frame conversion (%s), using the scalar conversion."
+                    .formatted(e.getCause().getMessage()));
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Conquade.LOGGER.fine("Could not load the Vector API frame conversion, using the scalar conversion.");
+            return null;
+        }
     }
 
     /**
@@ -47,92 +81,67 @@ public enum Renderer {
         final File renderTmpDir = Conquade.prepareTmp().get(Conquade.TmpSubdir.RENDER);
 
         // Create video data file
-        final File videoFile = Path.of(renderTmpDir.getAbsolutePath(), "video.dat").toFile();
+        final File videoFile = Path.of(renderTmpDir.getAbsolutePath(), Conquade.VIDEO_ENTRY).toFile();
         try {
             boolean ignored = videoFile.createNewFile();
         } catch (IOException e) {
             throw new IllegalStateException("Could not create video data file (\"%s\")!".formatted(videoFile.getAbsolutePath()), e);
         }
 
-        final File audioFile = Path.of(renderTmpDir.getAbsolutePath(), "audio.wav").toFile();
+        final File audioFile = Path.of(renderTmpDir.getAbsolutePath(), Conquade.AUDIO_ENTRY).toFile();
+        final File indexFile = Path.of(renderTmpDir.getAbsolutePath(), Conquade.INDEX_ENTRY).toFile();
 
-        if (args.doRenderAudio())
-            extractAudio(inputFile, audioFile, 0);
-        extractFrames(inputFile, renderTmpDir, args.getFps(), Conquade.TERMINAL_WIDTH, Conquade.TERMINAL_HEIGHT);
+        // The audio is extracted by a second ffmpeg process while the frames are converted
+        final AudioExtractor audioExtractor = args.doRenderAudio() ? new AudioExtractor(inputFile, audioFile, 0) : null;
+        if (audioExtractor != null) {
+            Conquade.LOGGER.info("Extracting audio using ffmpeg...");
+            audioExtractor.start();
+        }
 
         Conquade.LOGGER.info("Preparing to render frames...");
 
-
-        try (final DataOutputStream dos = new DataOutputStream(new FileOutputStream(videoFile))) {
-            // File header
-            dos.write((byte) args.getFps());
-            dos.writeInt(Conquade.TERMINAL_WIDTH);
-            dos.writeInt(Conquade.TERMINAL_HEIGHT);
-            dos.writeBoolean(Conquade.trueColor);
-
-            // Prepare for render info
-            System.out.printf("%s%n| LOADING |%n%n".formatted(
-                    AnsiHelper.foregroundColor256(AnsiHelper.toAnsi256(0, 255, 255)) // aqua
-            ));
-
-            final int frameCount = getFrameCount(renderTmpDir);
-
-            long renderTimeStamp = System.currentTimeMillis();
-            long renderFrameId = 0;
-            final StringBuilder etaBuilder = new StringBuilder();
-            for (int frameId = 1; frameId < frameCount + 1; frameId++) {
-                // Render
-                final File frame = Path.of(renderTmpDir.getAbsolutePath(), frameId + ".jpg").toFile();
-                if (Conquade.trueColor) {
-                    dos.write(renderFrameRGB(frame));
-                } else {
-                    dos.write(renderFrame256(frame));
-                }
-
-                // Render info
-                final long currentTimeStamp = System.currentTimeMillis();
-                if (currentTimeStamp - renderTimeStamp >= 1000 || frameId == frameCount) {
-                    double percentage = frameId / (double) frameCount;
-                    double fps = (frameId - renderFrameId) * ((currentTimeStamp - renderTimeStamp) / 1000D);
-
-                    // eta
-                    etaBuilder.setLength(0); // clear etaBuilder
-                    int seconds = (int) Math.round((frameCount - frameId) / fps);
-                    int hours = seconds / 3600;
-                    if (hours > 0) {
-                        etaBuilder.append(hours).append("hrs ");
-                        seconds -= hours * 3600;
-                    }
-                    int minutes = seconds / 60;
-                    if (hours > 0 || minutes > 0) {
-                        etaBuilder.append(minutes).append("min ");
-                        seconds -= minutes * 60;
-                    }
-                    etaBuilder.append(seconds).append("sec");
-
-                    final String loadbar = "=".repeat(Math.max(0, (int) (Conquade.TERMINAL_WIDTH * percentage) - 1)) + ">";
-
-                    System.out.print(AnsiHelper.moveCursorUp(3));
-                    System.out.println(AnsiHelper.CLEAR_LINE + loadbar);
-                    System.out.printf(AnsiHelper.CLEAR_LINE + "| RENDERING | %s%% | %d/%d frames | %s FPS | %s ETA |%n",
-                            ConquadeLogFormatter.DECIMAL_FORMATTER.format(percentage * 100),
-                            frameId,
-                            frameCount,
-                            ConquadeLogFormatter.DECIMAL_FORMATTER.format(fps),
-                            etaBuilder
-                    );
-                    System.out.println(AnsiHelper.CLEAR_LINE + loadbar);
-
-                    renderTimeStamp = currentTimeStamp;
-                    renderFrameId = frameId;
-                }
-            }
+        final int width = Conquade.TERMINAL_WIDTH;
+        final int height = Conquade.TERMINAL_HEIGHT;
+        final ExecutorService executor = Executors.newFixedThreadPool(args.getThreads());
+        boolean framesRendered = false;
+        try (final FramePipe framePipe = FramePipe.open(inputFile, args.getFps(), width, height);
+             final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(videoFile)))) {
+            final VideoWriter videoWriter = new VideoWriter(dos, new VideoHeader(
+                    args.getFps(),
+                    width,
+                    height,
+                    Conquade.trueColor,
+                    args.getKeyframeInterval(),
+                    args.getCompressionLevel() == 0 ? VideoHeader.COMPRESSION_NONE : VideoHeader.COMPRESSION_DEFLATE,
+                    args.getBakedColorTarget()
+            ), args.getCompressionLevel());
+
+            final RenderProgress progress = new RenderProgress(args.getProgressMode(), width);
+            final int frames = writeFrames(framePipe::read, videoWriter, executor, args.getThreads(), (frameCount, convertNanos, writeNanos) -> {
+                if (audioExtractor != null) audioExtractor.checkFailure(); // no need to continue without audio
+                progress.update(frameCount, framePipe.getFrameCountEstimate(), videoWriter.getBytesWritten());
+            });
+            progress.finish(frames, videoWriter.getBytesWritten());
+            writeIndex(videoWriter.getIndex(), indexFile);
+            framesRendered = true;
         } catch (IOException e) {
             throw new IllegalStateException("Could not write to video data file (\"%s\")!"
                     .formatted(videoFile.getAbsolutePath()), e);
+        } finally {
+            executor.shutdownNow();
+            if (!framesRendered) Conquade.destroyProcesses(); // stop the audio extraction
         }
 
         Conquade.LOGGER.info("Frames rendered (\"%s\").".formatted(videoFile.getAbsolutePath()));
+        if (audioExtractor != null) {
+            try {
+                audioExtractor.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Interrupted while waiting for the audio to extract!", e);
+            }
+            audioExtractor.checkFailure();
+            Conquade.LOGGER.info("Audio extracted (\"%s\").".formatted(audioFile));
+        }
         Conquade.LOGGER.info("Merging video with audio...");
 
         // Create output conquade file
@@ -156,24 +165,7 @@ public enum Renderer {
                 throw new IllegalStateException("The output file already exists! If you want to overwrite it, use the -force argument.");
         }
 
-        // Tar video and audio
-        try {
-            final TarArchiveOutputStream tarStream = new TarArchiveOutputStream(new FileOutputStream(outputFile.getAbsolutePath()));
-            // tar video
-            final TarArchiveEntry videoEntry = new TarArchiveEntry(videoFile, videoFile.getName());
-            tarStream.putArchiveEntry(videoEntry);
-            IOUtils.copy(new FileInputStream(videoFile), tarStream);
-            tarStream.closeArchiveEntry();
-            if (audioFile.exists()) { // tar audio
-                final TarArchiveEntry audioEntry = new TarArchiveEntry(audioFile, audioFile.getName());
-                tarStream.putArchiveEntry(audioEntry);
-                IOUtils.copy(new FileInputStream(audioFile), tarStream);
-                tarStream.closeArchiveEntry();
-            }
-        } catch (IOException e) {
-            throw new IllegalStateException("Could not tar video (\"%s\") and audio (\"%s\") to output file (\"%s\")!"
-                    .formatted(videoFile.getAbsolutePath(), audioFile.getAbsolutePath(), outputFile.getAbsolutePath()), e);
-        }
+        pack(outputFile, videoFile, audioFile, indexFile);
 
         Conquade.LOGGER.info("Video and audio merged.");
         Conquade.LOGGER.info("Done! The output file is located at \"%s\".".formatted(outputFile.getAbsolutePath()));
@@ -188,6 +180,197 @@ public enum Renderer {
         render(new RenderArgs(args));
     }
 
+    /**
+     * Converts the frames of the source and writes them with the video writer, then finishes the video data.
+     * <p>Frames are converted by the executor and written by this thread in frame order. Only a fixed number of jobs
+     * is in flight, each job's buffers are reused for every frame, so the memory usage does not depend
+     * on the video length.</p>
+     *
+     * @param source      the raw RGB frames of the size in the video header
+     * @param videoWriter the writer of the video data, the video header decides how the frames are converted
+     * @param executor    the executor converting the frames
+     * @param threads     the number of threads of the executor
+     * @param listener    called after every written frame
+     * @return the number of written frames
+     * @throws IOException when the video data could not be written
+     */
+    int writeFrames(final @NotNull FrameSource source, final @NotNull VideoWriter videoWriter, final @NotNull ExecutorService executor,
+                    final int threads, final @NotNull FrameListener listener) throws IOException {
+        final VideoHeader header = videoWriter.getHeader();
+        final int width = header.getWidth();
+        final int height = header.getHeight();
+        final boolean trueColor = header.isTrueColor();
+        final Player.ColorTarget bakedColorTarget = header.getBakedColorTarget();
+        final ArrayDeque<RenderJob> freeJobs = new ArrayDeque<>();
+        for (int i = 0; i < threads * 2; i++)
+            freeJobs.add(new RenderJob(width * height * 3, header.getFrameDataSize(),
+                    bakedColorTarget == null ? null : new FrameEncoder(width, height, trueColor, bakedColorTarget)));
+        final ArrayDeque<Future<RenderJob>> pendingJobs = new ArrayDeque<>();
+
+        int frameId = 0;
+        boolean reading = true;
+        long readFrameId = 0;
+        while (true) {
+            // Keep the workers busy while there are free jobs
+            while (reading && !freeJobs.isEmpty()) {
+                final RenderJob job = freeJobs.poll();
+                if (source.read(job.rgbFrame)) {
+                    job.frameId = readFrameId++;
+                    pendingJobs.add(executor.submit(() -> renderJob(job, width, height, trueColor)));
+                } else {
+                    freeJobs.add(job);
+                    reading = false;
+                }
+            }
+            // Commit the oldest frame
+            final Future<RenderJob> pendingJob = pendingJobs.poll();
+            if (pendingJob == null) break;
+            final RenderJob job = awaitJob(pendingJob);
+            final long writeTime = System.nanoTime();
+            if (job.bakeEncoder == null) {
+                videoWriter.writeFrame(job.data);
+            } else {
+                videoWriter.writeBakedFrame(job.baked);
+            }
+            final long writeNanos = System.nanoTime() - writeTime;
+            freeJobs.add(job);
+            frameId++;
+            listener.frameWritten(frameId, job.convertNanos, writeNanos);
+        }
+        videoWriter.finish();
+        return frameId;
+    }
+
+    /**
+     * Packs the video data, the audio (if it exists) and the index into a Conquade file.
+     *
+     * @param outputFile the Conquade file to write
+     * @param videoFile  the video data file
+     * @param audioFile  the audio file, it is not packed if it does not exist
+     * @param indexFile  the index file
+     * @throws IllegalStateException when the files could not be packed
+     */
+    void pack(final @NotNull File outputFile, final @NotNull File videoFile, final @NotNull File audioFile, final @NotNull File indexFile) {
+        // Tar video, audio and index
+        try (final TarArchiveOutputStream tarStream = new TarArchiveOutputStream(new FileOutputStream(outputFile.getAbsolutePath()))) {
+            tarStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX); // video data larger than 8 GB
+            tarFile(tarStream, videoFile, outputFile);
+            if (audioFile.exists())
+                tarFile(tarStream, audioFile, outputFile);
+            tarFile(tarStream, indexFile, outputFile);
+            tarStream.finish();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not tar video (\"%s\") and audio (\"%s\") to output file (\"%s\")!"
+                    .formatted(videoFile.getAbsolutePath(), audioFile.getAbsolutePath(), outputFile.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Writes the index of the video data into the index file.
+     *
+     * @param index     the index to write
+     * @param indexFile the index file
+     * @throws IllegalStateException when the index could not be written
+     */
+    void writeIndex(final @NotNull VideoIndex index, final @NotNull File indexFile) {
+        try (final DataOutputStream indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            index.write(indexStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to index file (\"%s\")!".formatted(indexFile.getAbsolutePath()), e);
+        }
+    }
+
+    private void tarFile(final @NotNull TarArchiveOutputStream tarStream, final @NotNull File file,
+                         final @NotNull File outputFile) throws IOException {
+        final ConquadeEvents.Archive event = new ConquadeEvents.Archive();
+        event.begin();
+        tarStream.putArchiveEntry(new TarArchiveEntry(file, file.getName()));
+        final long bytes;
+        try (final InputStream fileStream = new FileInputStream(file)) {
+            bytes = IOUtils.copyLarge(fileStream, tarStream);
+        }
+        tarStream.closeArchiveEntry();
+        event.commit("pack", outputFile, file.getName(), bytes);
+    }
+
+    private @NotNull RenderJob renderJob(final @NotNull RenderJob job, final int width, final int height, final boolean trueColor) {
+        final ConquadeEvents.FrameConvert event = new ConquadeEvents.FrameConvert();
+        event.begin();
+        final long convertTime = System.nanoTime();
+        if (trueColor) {
+            renderFrameRGB(job.rgbFrame, width, height, job.data);
+        } else {
+            renderFrame256(job.rgbFrame, width, height, job.data);
+        }
+        if (job.bakeEncoder != null)
+            job.bakeEncoder.encodeFrame(job.data, job.baked.clear());
+        job.convertNanos = System.nanoTime() - convertTime;
+        event.commit(job.frameId, job.bakeEncoder == null ? job.data.length : job.baked.length());
+        return job;
+    }
+
+    private @NotNull RenderJob awaitJob(final @NotNull Future<RenderJob> pendingJob) {
+        try {
+            return pendingJob.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not render frame!", e.getCause());
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Interrupted while waiting for a frame to render!", e);
+        }
+    }
+
+    /**
+     * Returns the offsets of the red, green and blue bytes in the pixels of a {@link BufferedImage#TYPE_3BYTE_BGR} image,
+     * when its backing array holds exactly its pixels (3 bytes per pixel, no padding).
+     *
+     * @param frame the image
+     * @return the red, green and blue offsets or null when the image can not be read from its backing array
+     */
+    private static int @Nullable [] interleavedBandOffsets(final @NotNull BufferedImage frame) {
+        if (frame.getType() != BufferedImage.TYPE_3BYTE_BGR) return null;
+        final WritableRaster raster = frame.getRaster();
+        if (!(raster.getSampleModel() instanceof final PixelInterleavedSampleModel sampleModel)) return null;
+        if (!isCompact(raster) || sampleModel.getPixelStride() != 3 || sampleModel.getScanlineStride() != frame.getWidth() * 3)
+            return null;
+        return sampleModel.getBandOffsets();
+    }
+
+    /**
+     * Returns whether the backing array of a {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB}
+     * image holds exactly its pixels (one int per pixel, no padding).
+     *
+     * @param frame the image
+     * @return whether the image can be read from its backing array
+     */
+    private static boolean isPacked(final @NotNull BufferedImage frame) {
+        if (frame.getType() != BufferedImage.TYPE_INT_RGB && frame.getType() != BufferedImage.TYPE_INT_ARGB) return false;
+        final WritableRaster raster = frame.getRaster();
+        return isCompact(raster)
+                && raster.getSampleModel() instanceof final SinglePixelPackedSampleModel sampleModel
+                && sampleModel.getScanlineStride() == frame.getWidth();
+    }
+
+    private static boolean isCompact(final @NotNull WritableRaster raster) {
+        return raster.getParent() == null // not a sub image
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0;
+    }
+
+    /**
+     * Returns the index of the character in {@link Conquade#CHARACTERS} representing the brightness of a color.
+     * <p>The luma ({@code 0.299 R + 0.587 G + 0.114 B}) is computed in 8-bit fixed point.</p>
+     *
+     * @param red   the red channel color value (0 - 255)
+     * @param green the green channel color value (0 - 255)
+     * @param blue  the blue channel color value (0 - 255)
+     * @return the character index
+     */
+    public static int glyphIndex(final int red, final int green, final int blue) {
+        return LUMA_GLYPHS[(red * 77 + green * 150 + blue * 29 + 128) >> 8];
+    }
+
     /**
      * Transforms a {@link BufferedImage} into 256 color video frame data.
      *
@@ -199,6 +382,20 @@ public enum Renderer {
         final int height = frame.getHeight();
         byte[] data = new byte[width * height * 2]; // each pixel takes 2 bytes - character index and ansi color
 
+        // The common image types are read straight from their backing arrays
+        final int[] bandOffsets = interleavedBandOffsets(frame);
+        if (bandOffsets != null) {
+            final byte[] pixels = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+            renderInterleaved256(pixels, bandOffsets[0], bandOffsets[1], bandOffsets[2], width * height, data);
+            return data;
+        }
+        if (isPacked(frame)) {
+            final int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+            renderPacked256(pixels, width * height, data);
+            return data;
+        }
+
+        // Other image types are converted by their color model
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 final int rgb = frame.getRGB(x, y);
@@ -206,8 +403,7 @@ public enum Renderer {
                 int green = (rgb >> 8) & 0xFF;
                 int blue = rgb & 0xFF;
 
-                double luma = red * 0.299D + green * 0.587D + blue * 0.114D; // 0 - 255
-                int index = Math.max(0, Math.min((int) Math.round(luma), Conquade.CHARACTERS.length() - 1));
+                int index = glyphIndex(red, green, blue);
 
                 int pixel = 2 * (y * width + x); // each pixel takes 2 bytes
                 data[pixel] = (byte) index;
@@ -217,6 +413,60 @@ public enum Renderer {
         return data;
     }
 
+    /**
+     * Transforms a raw RGB frame (3 bytes per pixel - red, green and blue) into 256 color video frame data.
+     *
+     * @param rgbFrame the raw RGB frame to transform
+     * @param width    the width of the frame
+     * @param height   the height of the frame
+     * @param data     the array to write the 256 video frame data to, must be at least width × height × 2 long
+     */
+    public void renderFrame256(final byte @NotNull [] rgbFrame, final int width, final int height, final byte @NotNull [] data) {
+        if (VECTOR_CONVERTER != null) {
+            VECTOR_CONVERTER.renderFrame256(rgbFrame, width * height, data);
+        } else {
+            renderInterleaved256(rgbFrame, 0, 1, 2, width * height, data);
+        }
+    }
+
+    private void renderInterleaved256(final byte @NotNull [] pixels, final int redOffset, final int greenOffset,
+                                      final int blueOffset, final int pixelCount, final byte @NotNull [] data) {
+        for (int i = 0; i < pixelCount; i++) {
+            int red = pixels[3 * i + redOffset] & 0xFF;
+            int green = pixels[3 * i + greenOffset] & 0xFF;
+            int blue = pixels[3 * i + blueOffset] & 0xFF;
+
+            data[2 * i] = (byte) glyphIndex(red, green, blue); // each pixel takes 2 bytes
+            data[2 * i + 1] = (byte) AnsiHelper.toAnsi256(red, green, blue);
+        }
+    }
+
+    private void renderPacked256(final int @NotNull [] pixels, final int pixelCount, final byte @NotNull [] data) {
+        for (int i = 0; i < pixelCount; i++) {
+            final int rgb = pixels[i];
+            int red = (rgb >> 16) & 0xFF;
+            int green = (rgb >> 8) & 0xFF;
+            int blue = rgb & 0xFF;
+
+            data[2 * i] = (byte) glyphIndex(red, green, blue); // each pixel takes 2 bytes
+            data[2 * i + 1] = (byte) AnsiHelper.toAnsi256(red, green, blue);
+        }
+    }
+
+    /**
+     * Transforms a raw RGB frame (3 bytes per pixel - red, green and blue) into 256 color video frame data.
+     *
+     * @param rgbFrame the raw RGB frame to transform
+     * @param width    the width of the frame
+     * @param height   the height of the frame
+     * @return 256 video frame data
+     */
+    public byte @NotNull [] renderFrame256(final byte @NotNull [] rgbFrame, final int width, final int height) {
+        final byte[] data = new byte[width * height * 2];
+        renderFrame256(rgbFrame, width, height, data);
+        return data;
+    }
+
     /**
      * Reads a {@link BufferedImage} from a file and transforms it into 256 color video frame data.
      *
@@ -242,6 +492,20 @@ public enum Renderer {
         final int height = frame.getHeight();
         byte[] data = new byte[width * height * 4]; // each pixel takes 4 bytes - character index, red, green and blue
 
+        // The common image types are read straight from their backing arrays
+        final int[] bandOffsets = interleavedBandOffsets(frame);
+        if (bandOffsets != null) {
+            final byte[] pixels = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+            renderInterleavedRGB(pixels, bandOffsets[0], bandOffsets[1], bandOffsets[2], width * height, data);
+            return data;
+        }
+        if (isPacked(frame)) {
+            final int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+            renderPackedRGB(pixels, width * height, data);
+            return data;
+        }
+
+        // Other image types are converted by their color model
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 final int rgb = frame.getRGB(x, y);
@@ -249,8 +513,7 @@ public enum Renderer {
                 int green = (rgb >> 8) & 0xFF;
                 int blue = rgb & 0xFF;
 
-                double luma = red * 0.299D + green * 0.587D + blue * 0.114D; // 0 - 255
-                int index = Math.max(0, Math.min((int) Math.round(luma), Conquade.CHARACTERS.length() - 1));
+                int index = glyphIndex(red, green, blue);
 
                 int pixel = 4 * (y * width + x); // each pixel takes 4 bytes
                 data[pixel] = (byte) index;
@@ -262,6 +525,66 @@ public enum Renderer {
         return data;
     }
 
+    /**
+     * Transforms a raw RGB frame (3 bytes per pixel - red, green and blue) into RGB color video frame data.
+     *
+     * @param rgbFrame the raw RGB frame to transform
+     * @param width    the width of the frame
+     * @param height   the height of the frame
+     * @param data     the array to write the RGB video frame data to, must be at least width × height × 4 long
+     */
+    public void renderFrameRGB(final byte @NotNull [] rgbFrame, final int width, final int height, final byte @NotNull [] data) {
+        if (VECTOR_CONVERTER != null) {
+            VECTOR_CONVERTER.renderFrameRGB(rgbFrame, width * height, data);
+        } else {
+            renderInterleavedRGB(rgbFrame, 0, 1, 2, width * height, data);
+        }
+    }
+
+    private void renderInterleavedRGB(final byte @NotNull [] pixels, final int redOffset, final int greenOffset,
+                                      final int blueOffset, final int pixelCount, final byte @NotNull [] data) {
+        for (int i = 0; i < pixelCount; i++) {
+            int red = pixels[3 * i + redOffset] & 0xFF;
+            int green = pixels[3 * i + greenOffset] & 0xFF;
+            int blue = pixels[3 * i + blueOffset] & 0xFF;
+
+            int pixel = 4 * i; // each pixel takes 4 bytes
+            data[pixel] = (byte) glyphIndex(red, green, blue);
+            data[pixel + 1] = (byte) red;
+            data[pixel + 2] = (byte) green;
+            data[pixel + 3] = (byte) blue;
+        }
+    }
+
+    private void renderPackedRGB(final int @NotNull [] pixels, final int pixelCount, final byte @NotNull [] data) {
+        for (int i = 0; i < pixelCount; i++) {
+            final int rgb = pixels[i];
+            int red = (rgb >> 16) & 0xFF;
+            int green = (rgb >> 8) & 0xFF;
+            int blue = rgb & 0xFF;
+
+            int pixel = 4 * i; // each pixel takes 4 bytes
+            data[pixel] = (byte) glyphIndex(red, green, blue);
+            data[pixel + 1] = (byte) red;
+            data[pixel + 2] = (byte) green;
+            data[pixel + 3] = (byte) blue;
+        }
+    }
+
+    /**
+     * Transforms a raw RGB frame (3 bytes per pixel - red, green and blue) into RGB color video frame data.
+     *
+     * @param rgbFrame the raw RGB frame to transform
+     * @param width    the width of the frame
+     * @param height   the height of the frame
+     * @return RGB video frame data
+     */
+    public byte @NotNull [] renderFrameRGB(final byte @NotNull [] rgbFrame, final int width, final int height) {
+        final byte[] data = new byte[width * height * 4];
+        renderFrameRGB(rgbFrame, width, height, data);
+        return data;
+    }
+
     /**
      * Reads a {@link BufferedImage} from a file and transforms it into RGB color video frame data.
      *
@@ -285,39 +608,104 @@ public enum Renderer {
      */
     public void extractAudio(final @NotNull File inputFile, final @NotNull File outputFile, final int audioTrack) {
         Conquade.LOGGER.info("Extracting audio using ffmpeg...");
-        final String cmd = "%s -y -i %s -map 0:a:%d -loglevel warning %s"
+        Conquade.exec(audioCommand(inputFile, outputFile, audioTrack));
+        Conquade.LOGGER.info("Audio extracted (\"%s\").".formatted(outputFile));
+    }
+
+    private static @NotNull String audioCommand(final @NotNull File inputFile, final @NotNull File outputFile, final int audioTrack) {
+        return "%s -y -i %s -map 0:a:%d -loglevel warning %s"
                 .formatted(
                         Conquade.ffmpegExe,
                         inputFile.getAbsolutePath(),
                         audioTrack,
                         outputFile.getAbsolutePath()
                 );
-        Conquade.exec(cmd);
-        Conquade.LOGGER.info("Audio extracted (\"%s\").".formatted(outputFile));
     }
 
     /**
-     * Extracts frames from a video.
-     *
-     * @param inputFile    the input file to extract frames from
-     * @param outputFolder the output folder to extract frames to
-     * @param fps          how many frames should be extracted per video second
-     * @param width        the width of the frames
-     * @param height       the height of the frames
+     * A thread extracting an audio track with ffmpeg (see {@link Renderer#extractAudio(File, File, int)}).
      */
-    public void extractFrames(final @NotNull File inputFile, final @NotNull File outputFolder, final int fps, final int width, final int height) {
-        Conquade.LOGGER.info("Extracting frames using ffmpeg...");
-        final String cmd = "%s -y -i %s -r %d -an -vf scale=%d:%d -pix_fmt yuvj420p -q:v 1 %s%%d.jpg"
-                .formatted(
-                        Conquade.ffmpegExe,
-                        inputFile.getAbsolutePath(),
-                        fps,
-                        width,
-                        height,
-                        outputFolder.getAbsolutePath() + File.separator
-                );
-        Conquade.exec(cmd);
-        Conquade.LOGGER.info("Frames extracted (\"%s*.jpg\").".formatted(outputFolder.getAbsolutePath() + File.separator));
+    private static final class AudioExtractor extends Thread {
+        private final @NotNull File inputFile;
+        private final @NotNull File outputFile;
+        private final int audioTrack;
+        private volatile @Nullable RuntimeException exception;
+
+        private AudioExtractor(final @NotNull File inputFile, final @NotNull File outputFile, final int audioTrack) {
+            super("audio-extractor");
+            setDaemon(true);
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.audioTrack = audioTrack;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Conquade.exec(audioCommand(inputFile, outputFile, audioTrack));
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+        }
+
+        /**
+         * Throws when the extraction failed.
+         *
+         * @throws IllegalStateException when the audio could not be extracted
+         */
+        private void checkFailure() {
+            final RuntimeException exception = this.exception;
+            if (exception != null)
+                throw new IllegalStateException("Could not extract audio!", exception);
+        }
+    }
+
+    /**
+     * A source of raw RGB frames for {@link Renderer#writeFrames(FrameSource, VideoWriter, ExecutorService, int, FrameListener)}.
+     */
+    @FunctionalInterface
+    interface FrameSource {
+        /**
+         * Reads the next frame.
+         *
+         * @param rgbFrame the array to read the frame into
+         * @return true when a frame was read, false when there are no more frames
+         */
+        boolean read(final byte @NotNull [] rgbFrame);
+    }
+
+    /**
+     * Called by {@link Renderer#writeFrames(FrameSource, VideoWriter, ExecutorService, int, FrameListener)}
+     * after every written frame.
+     */
+    @FunctionalInterface
+    interface FrameListener {
+        /**
+         * Called after a frame was written.
+         *
+         * @param frames       the number of frames written so far
+         * @param convertNanos how long the frame was converted in nanoseconds
+         * @param writeNanos   how long the frame was written in nanoseconds
+         */
+        void frameWritten(final long frames, final long convertNanos, final long writeNanos);
+    }
+
+    /**
+     * Buffers of a single frame going through the render worker pool.
+     */
+    private static final class RenderJob {
+        private final byte @NotNull [] rgbFrame;
+        private final byte @NotNull [] data;
+        private final @Nullable FrameEncoder bakeEncoder;
+        private final @NotNull AnsiBuffer baked = new AnsiBuffer();
+        private long frameId;
+        private long convertNanos;
+
+        private RenderJob(final int rgbFrameSize, final int dataSize, final @Nullable FrameEncoder bakeEncoder) {
+            rgbFrame = new byte[rgbFrameSize];
+            data = new byte[dataSize];
+            this.bakeEncoder = bakeEncoder;
+        }
     }
 
     /**
@@ -329,6 +717,11 @@ public enum Renderer {
         private boolean overwriteOutput = false;
         private boolean renderAudio = true;
         private int fps = 30;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int keyframeInterval;
+        private int compressionLevel = 0;
+        private @Nullable Player.ColorTarget bakedColorTarget = null;
+        private @NotNull RenderProgress.Mode progressMode = RenderProgress.Mode.BAR;
 
         /**
          * Read the args and construct a new {@link RenderArgs}, wrapping them.
@@ -377,6 +770,77 @@ public enum Renderer {
                 renderAudio = false;
                 Conquade.LOGGER.fine("Audio will not be rendered (-noaudio).");
             }
+            // Threads
+            String threadsStr = argMap.get("threads");
+            if (threadsStr == null) {
+                Conquade.LOGGER.fine("Render threads defaulted to %d.".formatted(threads));
+            } else {
+                try {
+                    threads = Integer.parseInt(threadsStr);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Threads argument value is not a valid number!", e);
+                }
+                if (threads < 1)
+                    throw new IllegalArgumentException("Threads argument value must be a positive number!");
+                Conquade.LOGGER.fine("Render threads set to %d.".formatted(threads));
+            }
+            // Keyframe interval
+            String keyframeIntervalStr = argMap.get("keyint");
+            if (keyframeIntervalStr == null) {
+                keyframeInterval = fps * 10;
+                Conquade.LOGGER.fine("Keyframe interval defaulted to %d frames.".formatted(keyframeInterval));
+            } else {
+                try {
+                    keyframeInterval = Integer.parseInt(keyframeIntervalStr);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Keyframe interval argument value is not a valid number!", e);
+                }
+                if (keyframeInterval < 1)
+                    throw new IllegalArgumentException("Keyframe interval argument value must be a positive number!");
+                Conquade.LOGGER.fine("Keyframe interval set to %d frames.".formatted(keyframeInterval));
+            }
+            // Compression
+            if (argMap.containsKey("compress")) {
+                final String compressionLevelStr = argMap.get("compress");
+                if (compressionLevelStr == null) {
+                    compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+                } else {
+                    try {
+                        compressionLevel = Integer.parseInt(compressionLevelStr);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Compression level argument value is not a valid number!", e);
+                    }
+                    if (compressionLevel < 1 || compressionLevel > 9)
+                        throw new IllegalArgumentException("Compression level argument value must be a number between 1 and 9!");
+                }
+                Conquade.LOGGER.fine("Video data will be compressed with level %d (-compress).".formatted(compressionLevel));
+            }
+            // Baked color target
+            if (argMap.containsKey("bake")) {
+                final String bakedColorTargetStr = argMap.get("bake");
+                if (bakedColorTargetStr == null)
+                    throw new IllegalArgumentException("Missing bake argument value (-bake <target>)!");
+                try {
+                    bakedColorTarget = Player.ColorTarget.valueOf(bakedColorTargetStr.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Bake argument is not valid! " +
+                            "Valid color targets are: " + Arrays.toString(Player.ColorTarget.values()), e);
+                }
+                Conquade.LOGGER.fine("Frames will be baked for color target %s (-bake).".formatted(bakedColorTarget));
+            }
+            // Progress mode
+            final String progressModeStr = argMap.get("progress");
+            if (progressModeStr == null) {
+                Conquade.LOGGER.fine("Progress mode defaulted to %s.".formatted(progressMode));
+            } else {
+                try {
+                    progressMode = RenderProgress.Mode.valueOf(progressModeStr.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Progress argument is not valid! " +
+                            "Valid progress modes are: " + Arrays.toString(RenderProgress.Mode.values()), e);
+                }
+                Conquade.LOGGER.fine("Progress mode set to %s (-progress).".formatted(progressMode));
+            }
         }
 
         /**
@@ -423,5 +887,50 @@ public enum Renderer {
         public boolean doRenderAudio() {
             return renderAudio;
         }
+
+        /**
+         * Returns the number of threads converting frames in parallel.
+         *
+         * @return the number of render threads
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Returns after how many frames a keyframe is written, the frames in between store only the changed cells.
+         *
+         * @return the keyframe interval
+         */
+        public int getKeyframeInterval() {
+            return keyframeInterval;
+        }
+
+        /**
+         * Returns the video data compression level, 1 is the fastest, 9 is the smallest and 0 means no compression.
+         *
+         * @return the compression level
+         */
+        public int getCompressionLevel() {
+            return compressionLevel;
+        }
+
+        /**
+         * Returns the color target the frames are stored as final terminal output for.
+         *
+         * @return the baked color target or null when the frames should not be baked
+         */
+        public @Nullable Player.ColorTarget getBakedColorTarget() {
+            return bakedColorTarget;
+        }
+
+        /**
+         * Returns how the render progress is reported (see {@link RenderProgress}).
+         *
+         * @return the progress mode
+         */
+        public @NotNull RenderProgress.Mode getProgressMode() {
+            return progressMode;
+        }
     }
 }
@@ -1,10 +1,10 @@
 package cz.jeme.programu.conquade;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import javax.sound.sampled.Clip;
 import java.io.File;
-import java.nio.file.Path;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Map;
 
@@ -17,11 +17,6 @@ public enum Streamer {
      */
     INSTANCE;
 
-    /**
-     * Time in milliseconds between starting the ffmpeg renderer thread and playing the video.
-     */
-    public static final long FFMPEG_ADVANCE = 1000;
-
     /**
      * Streams the video with options from the args provided.
      *
@@ -29,78 +24,155 @@ public enum Streamer {
      */
     public void stream(final @NotNull StreamArgs args) {
         final File inputFile = args.getInputFile();
-        final File renderTmpDir = Conquade.prepareTmp().get(Conquade.TmpSubdir.RENDER);
-
-        final File audioFile = Path.of(renderTmpDir.getAbsolutePath(), "audio.wav").toFile();
-        if (args.doStreamAudio())
-            Renderer.INSTANCE.extractAudio(inputFile, audioFile, 0);
-        Thread frameRenderThread = new Thread(() -> { // Async render frames with ffmpeg
-            Renderer.INSTANCE.extractFrames(
-                    inputFile,
-                    renderTmpDir,
-                    args.getFps(),
-                    Conquade.TERMINAL_WIDTH,
-                    Conquade.TERMINAL_HEIGHT
-            );
-        });
-        frameRenderThread.start();
-
-        try {
-            Thread.sleep(FFMPEG_ADVANCE);
-        } catch (InterruptedException e) {
-            throw new IllegalStateException("Could not wait after issuing ffmpeg render!");
-        }
+        final int width = Conquade.TERMINAL_WIDTH;
+        final int height = Conquade.TERMINAL_HEIGHT;
 
-        Clip clip = null;
-        if (args.doStreamAudio()) {
-            clip = Player.INSTANCE.clipAudio(audioFile);
-            clip.start();
-        }
+        // Audio and frames are decoded by two ffmpeg processes running in parallel, nothing is extracted ahead
+        final AudioPipe audioPipe = args.doStreamAudio() ? AudioPipe.open(inputFile, 0) : null;
+        final AudioPlayer audio = audioPipe == null ? null : new AudioPlayer(audioPipe.getAudioStream());
+        final PlaybackClock clock = new PlaybackClock(args.getFps(), audio);
+        final PlaybackStats stats = new PlaybackStats(width, height, args.getFps(), clock);
+
+        final FrameEncoder encoder = new FrameEncoder(width, height, Conquade.trueColor,
+                args.getColorTarget(), args.doDelta(), args.getRedrawInterval());
+        // Frames are decoded and encoded ahead by the decoder thread, this thread only prints them.
+        // When the ring is full, the decoder stops reading and ffmpeg blocks on the full pipe.
+        final FrameRing ring = new FrameRing(args.getBufferSize());
+        // Late frames are dropped by the decoder before encoding, this thread may drop only independent frames
+        final boolean independentFrames = !args.doDelta();
+
+        try (audioPipe;
+             audio;
+             final FramePipe framePipe = FramePipe.open(inputFile, args.getFps(), width, height)) {
+            final FrameDecoder decoder = new FrameDecoder(framePipe, encoder, ring, clock, stats);
 
-        Player.INSTANCE.hookToShutdown();
-        Conquade.LOGGER.info("Streaming the video...");
-        Conquade.disableLogger();
-        System.out.println(AnsiHelper.HIDE_CURSOR);
-
-        int frameId = 1;
-        while (true) {
-            final long startTimeStamp = System.currentTimeMillis();
-            final File frame = Path.of(renderTmpDir.getAbsolutePath(), frameId + ".jpg").toFile();
-            if (!frame.exists()) {
-                if (frameRenderThread.isAlive()) {
-                    throw new IllegalStateException("Outrun ffmpeg frame renderer while streaming!");
-                } else {
-                    break;
+            Player.INSTANCE.hookToShutdown();
+            final File reportFile = args.getReportFile();
+            if (reportFile != null) // also when the playback is quit
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> stats.writeReport(reportFile, inputFile)));
+            Conquade.LOGGER.info("Streaming the video...");
+            Conquade.disableLogger();
+            System.out.println(AnsiHelper.HIDE_CURSOR);
+            final FrameSink frameSink = new FrameSink(args.doSynchronizedOutput());
+
+            decoder.start();
+            try {
+                FrameRing.Slot slot;
+                while ((slot = ring.take()) != null) {
+                    final long frameId = slot.getFrameId();
+                    clock.start(); // the first frame arrived
+                    if (independentFrames && clock.isLate(frameId)) {
+                        clock.dropFrame();
+                        ring.release();
+                        continue;
+                    }
+                    clock.awaitFrame(frameId);
+                    stats.recordLag(frameId);
+                    final AnsiBuffer frame = slot.getFrame();
+                    if (args.doShowStats()) stats.appendOverlay(frame);
+                    final ConquadeEvents.FrameWrite writeEvent = new ConquadeEvents.FrameWrite();
+                    writeEvent.begin();
+                    final long writeTime = System.nanoTime();
+                    frameSink.write(frame);
+                    stats.record(PlaybackStats.Stage.WRITE, writeTime);
+                    writeEvent.commit(frameId, frame.length());
+                    stats.countFrame(frame.length());
+                    ring.release();
                 }
+            } finally {
+                ring.close();
+                decoder.join();
             }
-            final String frameStr;
-            if (Conquade.trueColor) {
-                final byte[] renderedFrame = Renderer.INSTANCE.renderFrameRGB(frame);
-                frameStr = Player.INSTANCE.readFrameRGB(renderedFrame, Conquade.TERMINAL_WIDTH, Conquade.TERMINAL_HEIGHT, args.getColorTarget());
-            } else {
-                final byte[] renderedFrame = Renderer.INSTANCE.renderFrame256(frame);
-                frameStr = Player.INSTANCE.readFrame256(renderedFrame, Conquade.TERMINAL_WIDTH, Conquade.TERMINAL_HEIGHT, args.getColorTarget());
-            }
+            final Exception decoderException = decoder.exception;
+            if (decoderException != null)
+                throw new IllegalStateException("Could not decode the video frames!", decoderException);
+            stats.clearOverlay();
+            Player.INSTANCE.cleanup();
+            Conquade.enableLogger(); // before the pipes are closed, so their warnings are shown
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not print frame!", e);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Thread sleep interrupted!", e);
+        }
+        Conquade.LOGGER.info("Video finished! %d late frames were dropped.".formatted(clock.getDroppedFrames()));
+        if (args.doShowStats()) Conquade.LOGGER.info(stats.getSummary());
+        final File reportFile = args.getReportFile();
+        if (reportFile != null) {
+            stats.writeReport(reportFile, inputFile);
+            Conquade.LOGGER.info("Stats report written (\"%s\").".formatted(reportFile.getAbsolutePath()));
+        }
+    }
 
-            Player.INSTANCE.printFrame(frameStr, Conquade.TERMINAL_HEIGHT);
-            if (!frame.delete())
-                throw new IllegalStateException("Could not delete frame file (\"%s\")!".formatted(frame.getAbsolutePath()));
-            if (clip != null) clip.start();
-            long sleep = Math.round(1000D / args.getFps()) - (System.currentTimeMillis() - startTimeStamp);
-            if (sleep < 0 && clip != null) {
-                clip.stop();
-            } else {
-                try {
-                    Thread.sleep(Math.max(0, sleep));
-                } catch (InterruptedException e) {
-                    throw new IllegalStateException("Thread sleep interrupted!", e);
+    /**
+     * A thread reading decoded frames from ffmpeg and encoding them ahead of the playback into a {@link FrameRing}.
+     */
+    private static final class FrameDecoder extends Thread {
+        private final @NotNull FramePipe framePipe;
+        private final @NotNull FrameEncoder encoder;
+        private final @NotNull FrameRing ring;
+        private final @NotNull PlaybackClock clock;
+        private final @NotNull PlaybackStats stats;
+        private final byte @NotNull [] rgbFrame;
+        private final byte @NotNull [] frameData;
+        private volatile @Nullable Exception exception;
+
+        private FrameDecoder(final @NotNull FramePipe framePipe, final @NotNull FrameEncoder encoder,
+                             final @NotNull FrameRing ring, final @NotNull PlaybackClock clock,
+                             final @NotNull PlaybackStats stats) {
+            super("frame-decoder");
+            setDaemon(true);
+            this.framePipe = framePipe;
+            this.encoder = encoder;
+            this.ring = ring;
+            this.clock = clock;
+            this.stats = stats;
+            rgbFrame = new byte[framePipe.getFrameSize()];
+            frameData = new byte[framePipe.getWidth() * framePipe.getHeight() * (Conquade.trueColor ? 4 : 2)];
+        }
+
+        @Override
+        public void run() {
+            final int width = framePipe.getWidth();
+            final int height = framePipe.getHeight();
+            try {
+                long frameId = 0;
+                while (true) {
+                    final FrameRing.Slot slot = ring.claim();
+                    if (slot == null) return; // the playback ended
+                    final ConquadeEvents.FrameRead readEvent = new ConquadeEvents.FrameRead();
+                    readEvent.begin();
+                    final long readTime = System.nanoTime();
+                    if (!framePipe.read(rgbFrame)) break;
+                    final long convertTime = stats.record(PlaybackStats.Stage.READ, readTime);
+                    readEvent.commit(frameId, rgbFrame.length);
+                    // The clock starts with the first printed frame, until then no frame is late
+                    if (clock.isRunning() && clock.isLate(frameId)) { // skipped before encoding, so the encoder diffs only against printed frames
+                        clock.dropFrame();
+                        frameId++;
+                        continue; // the slot stays claimed
+                    }
+                    final ConquadeEvents.FrameConvert convertEvent = new ConquadeEvents.FrameConvert();
+                    convertEvent.begin();
+                    if (Conquade.trueColor) {
+                        Renderer.INSTANCE.renderFrameRGB(rgbFrame, width, height, frameData);
+                    } else {
+                        Renderer.INSTANCE.renderFrame256(rgbFrame, width, height, frameData);
+                    }
+                    final long encodeTime = stats.record(PlaybackStats.Stage.CONVERT, convertTime);
+                    convertEvent.commit(frameId, frameData.length);
+                    final ConquadeEvents.FrameEncode encodeEvent = new ConquadeEvents.FrameEncode();
+                    encodeEvent.begin();
+                    encoder.encodeFrame(frameData, slot.getFrame().clear());
+                    stats.record(PlaybackStats.Stage.ENCODE, encodeTime);
+                    encodeEvent.commit(frameId, slot.getFrame().length());
+                    slot.setFrameId(frameId++);
+                    ring.publish();
                 }
+            } catch (Exception e) {
+                exception = e;
             }
-            frameId++;
+            ring.finish();
         }
-        Player.INSTANCE.cleanup();
-        Conquade.enableLogger();
-        Conquade.LOGGER.info("Video finished!");
     }
 
     /**
@@ -120,6 +192,12 @@ public enum Streamer {
         private boolean streamAudio = true;
         private int fps = 25;
         private @NotNull Player.ColorTarget colorTarget = Player.ColorTarget.TEXT_ONLY;
+        private boolean delta = false;
+        private int redrawInterval = Player.DEFAULT_REDRAW_INTERVAL;
+        private boolean synchronizedOutput = false;
+        private int bufferSize = Player.DEFAULT_BUFFER_SIZE;
+        private boolean showStats = false;
+        private @Nullable File reportFile;
 
         /**
          * Read the args and construct a new {@link StreamArgs}, wrapping them.
@@ -164,6 +242,33 @@ public enum Streamer {
                             "Valid color targets are: " + Arrays.toString(Player.ColorTarget.values()), e);
                 }
             }
+            // Delta output
+            if (argMap.containsKey("delta")) {
+                delta = true;
+                redrawInterval = Player.parseRedrawInterval(argMap.get("delta"));
+            }
+            // Synchronized output
+            if (argMap.containsKey("sync")) {
+                synchronizedOutput = true;
+                Conquade.LOGGER.fine("Frames will be printed as synchronized updates (-sync).");
+            }
+            // Buffer size
+            final String bufferSizeStr = argMap.get("buffer");
+            if (bufferSizeStr == null) {
+                Conquade.LOGGER.fine("Frame buffer size defaulted to %d frames.".formatted(bufferSize));
+            } else {
+                try {
+                    bufferSize = Integer.parseInt(bufferSizeStr);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Buffer argument value is not a valid number!", e);
+                }
+                if (bufferSize < 1)
+                    throw new IllegalArgumentException("Buffer argument value must be a positive number!");
+                Conquade.LOGGER.fine("Frame buffer size set to %d frames.".formatted(bufferSize));
+            }
+            // Stats
+            showStats = Player.parseShowStats(argMap);
+            reportFile = Player.parseReportFile(argMap);
         }
 
         /**
@@ -201,5 +306,59 @@ public enum Streamer {
         public @NotNull Player.ColorTarget getColorTarget() {
             return colorTarget;
         }
+
+        /**
+         * Returns whether to print only the cells that changed since the previous frame.
+         *
+         * @return whether to use delta output
+         */
+        public boolean doDelta() {
+            return delta;
+        }
+
+        /**
+         * Returns after how many frames the whole frame is redrawn in delta output mode, 0 means never.
+         *
+         * @return the redraw interval in frames
+         */
+        public int getRedrawInterval() {
+            return redrawInterval;
+        }
+
+        /**
+         * Returns whether to wrap every frame in a synchronized update, so the terminal never shows a half drawn frame.
+         *
+         * @return whether to use synchronized output
+         */
+        public boolean doSynchronizedOutput() {
+            return synchronizedOutput;
+        }
+
+        /**
+         * Returns how many frames are decoded and encoded ahead of the playback.
+         *
+         * @return the frame buffer size
+         */
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        /**
+         * Returns whether to show the playback stats overlay below the frames (see {@link PlaybackStats}).
+         *
+         * @return whether to show the stats
+         */
+        public boolean doShowStats() {
+            return showStats;
+        }
+
+        /**
+         * Returns the file to write the JSON playback stats report to when the playback ends.
+         *
+         * @return the report file or null when no report should be written
+         */
+        public @Nullable File getReportFile() {
+            return reportFile;
+        }
     }
 }
@@ -0,0 +1,191 @@
+package cz.jeme.programu.conquade;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link FrameConverter} converting whole lanes of pixels at once using the Vector API ({@code jdk.incubator.vector}).
+ * <p>The bytes of a lane of pixels (8 pixels with 256 bit vectors) are loaded at once, shuffled into red, green and blue
+ * lanes, widened to ints and converted
+ * with integer arithmetic only: the luma and the ANSI 256 color cube levels use the same fixed-point formulas as
+ * the lookup tables of the scalar conversion, divisions are replaced by multiplications and shifts. The output bytes
+ * of a pixel are packed into its int lane, so the whole lane is stored at once. The pixels that do not fill
+ * a whole lane are converted by the scalar conversion.</p>
+ * <p>The vectors are of the size preferred by the CPU. Smaller vectors than {@link VectorFrameConverter#MIN_BIT_SIZE}
+ * bits (like NEON or SSE) are not supported, the few pixels in a lane do not pay off the shuffles and the scalar
+ * conversion is faster.</p>
+ * <p>This class is loaded reflectively by the {@link Renderer} only when the incubator module is available.</p>
+ */
+final class VectorFrameConverter implements FrameConverter {
+    /**
+     * The smallest supported vector size in bits.
+     */
+    public static final int MIN_BIT_SIZE = 256;
+
+    private static final @NotNull VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    // the same shape as the bytes, so a byte vector is widened to ints by taking its first part
+    private static final @NotNull VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = INTS.length();
+    // The pixels needed after the first pixel of a lane for the load of the whole byte vector to stay in the frame
+    private static final int LOAD_PIXELS = (BYTES.length() + 2) / 3;
+    // The pixels needed for the store of the whole byte vector of 256 color video frame data to stay in the data,
+    // the bytes past the lane are overwritten by the following lane
+    private static final int STORE_256_PIXELS = BYTES.length() / 2;
+
+    // Shuffles moving the channels of the loaded pixels to the first lanes
+    private static final @NotNull VectorShuffle<Byte> RED_SHUFFLE = channelShuffle(0);
+    private static final @NotNull VectorShuffle<Byte> GREEN_SHUFFLE = channelShuffle(1);
+    private static final @NotNull VectorShuffle<Byte> BLUE_SHUFFLE = channelShuffle(2);
+    // Shuffle moving the two low bytes of every int lane to the first half of the vector
+    private static final @NotNull VectorShuffle<Byte> SHORT_SHUFFLE = VectorShuffle.fromOp(BYTES, i -> 4 * (i / 2 % LANES) + i % 2);
+
+    // round(v / 255 × 5) = (10v + 255) / 510 = ((10v + 255) × 515) >> 18 for every channel value v
+    private static final int CUBE_MULTIPLIER = 515;
+    private static final int CUBE_SHIFT = 18;
+
+    // (luma × max index + 127) / 255 = ((luma × max index + 127) × GLYPH_MULTIPLIER) >> GLYPH_SHIFT for every luma
+    private static final int MAX_INDEX = Conquade.CHARACTERS.length() - 1;
+    private static final int GLYPH_MULTIPLIER;
+    private static final int GLYPH_SHIFT;
+
+    static {
+        int shift = 8;
+        while (!isExactDivision(shift)) {
+            if (++shift == 31)
+                throw new IllegalStateException("Could not replace the glyph index division!");
+        }
+        GLYPH_SHIFT = shift;
+        GLYPH_MULTIPLIER = glyphMultiplier(shift);
+    }
+
+    private static int glyphMultiplier(final int shift) {
+        return (int) (((1L << shift) + 254) / 255); // rounded up
+    }
+
+    private static boolean isExactDivision(final int shift) {
+        final long multiplier = glyphMultiplier(shift);
+        for (int luma = 0; luma < 256; luma++) {
+            final int dividend = luma * MAX_INDEX + 127;
+            final long product = dividend * multiplier;
+            if (product > Integer.MAX_VALUE || product >> shift != dividend / 255) return false; // int lanes
+        }
+        return true;
+    }
+
+    /**
+     * Creates a new {@link VectorFrameConverter}.
+     *
+     * @throws UnsupportedOperationException when the CPU does not support vectors of at least
+     *                                       {@link VectorFrameConverter#MIN_BIT_SIZE} bits
+     */
+    VectorFrameConverter() {
+        if (BYTES.vectorBitSize() < MIN_BIT_SIZE)
+            throw new UnsupportedOperationException("The preferred vector size (%d bits) is smaller than %d bits!"
+                    .formatted(BYTES.vectorBitSize(), MIN_BIT_SIZE));
+    }
+
+    private static @NotNull VectorShuffle<Byte> channelShuffle(final int channel) {
+        final int[] indexes = new int[BYTES.length()];
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i] = 3 * (i % LANES) + channel; // only the first LANES lanes are used
+        return VectorShuffle.fromArray(BYTES, indexes, 0);
+    }
+
+    /**
+     * Returns the name of the conversion with the vector size.
+     *
+     * @return the description of the conversion
+     */
+    @Override
+    public @NotNull String toString() {
+        return "Vector API (%d bit)".formatted(BYTES.vectorBitSize());
+    }
+
+    @Override
+    public void renderFrame256(final byte @NotNull [] rgbFrame, final int pixelCount, final byte @NotNull [] data) {
+        int i = 0;
+        for (; i + Math.max(LOAD_PIXELS, STORE_256_PIXELS) <= pixelCount; i += LANES) {
+            final ByteVector pixels = ByteVector.fromArray(BYTES, rgbFrame, 3 * i);
+            final IntVector red = widen(pixels.rearrange(RED_SHUFFLE));
+            final IntVector green = widen(pixels.rearrange(GREEN_SHUFFLE));
+            final IntVector blue = widen(pixels.rearrange(BLUE_SHUFFLE));
+
+            final IntVector color = cubeLevel(red).mul(36)
+                    .add(cubeLevel(green).mul(6))
+                    .add(cubeLevel(blue))
+                    .add(16);
+
+            // each pixel takes 2 bytes - character index and ansi color
+            final IntVector packed = glyphIndex(red, green, blue).or(color.lanewise(VectorOperators.LSHL, 8));
+            packed.reinterpretAsBytes()
+                    .rearrange(SHORT_SHUFFLE)
+                    .intoArray(data, 2 * i);
+        }
+        for (; i < pixelCount; i++) {
+            int red = rgbFrame[3 * i] & 0xFF;
+            int green = rgbFrame[3 * i + 1] & 0xFF;
+            int blue = rgbFrame[3 * i + 2] & 0xFF;
+
+            data[2 * i] = (byte) Renderer.glyphIndex(red, green, blue);
+            data[2 * i + 1] = (byte) AnsiHelper.toAnsi256(red, green, blue);
+        }
+    }
+
+    @Override
+    public void renderFrameRGB(final byte @NotNull [] rgbFrame, final int pixelCount, final byte @NotNull [] data) {
+        int i = 0;
+        for (; i + LOAD_PIXELS <= pixelCount; i += LANES) {
+            final ByteVector pixels = ByteVector.fromArray(BYTES, rgbFrame, 3 * i);
+            final IntVector red = widen(pixels.rearrange(RED_SHUFFLE));
+            final IntVector green = widen(pixels.rearrange(GREEN_SHUFFLE));
+            final IntVector blue = widen(pixels.rearrange(BLUE_SHUFFLE));
+
+            // each pixel takes 4 bytes - character index, red, green and blue
+            glyphIndex(red, green, blue)
+                    .or(red.lanewise(VectorOperators.LSHL, 8))
+                    .or(green.lanewise(VectorOperators.LSHL, 16))
+                    .or(blue.lanewise(VectorOperators.LSHL, 24))
+                    .reinterpretAsBytes()
+                    .intoArray(data, 4 * i);
+        }
+        for (; i < pixelCount; i++) {
+            int red = rgbFrame[3 * i] & 0xFF;
+            int green = rgbFrame[3 * i + 1] & 0xFF;
+            int blue = rgbFrame[3 * i + 2] & 0xFF;
+
+            int pixel = 4 * i; // each pixel takes 4 bytes
+            data[pixel] = (byte) Renderer.glyphIndex(red, green, blue);
+            data[pixel + 1] = (byte) red;
+            data[pixel + 2] = (byte) green;
+            data[pixel + 3] = (byte) blue;
+        }
+    }
+
+    private static @NotNull IntVector widen(final @NotNull ByteVector bytes) {
+        return ((IntVector) bytes.convertShape(VectorOperators.B2I, INTS, 0)).and(0xFF); // unsigned
+    }
+
+    private static @NotNull IntVector glyphIndex(final @NotNull IntVector red, final @NotNull IntVector green,
+                                                 final @NotNull IntVector blue) {
+        final IntVector luma = red.mul(77)
+                .add(green.mul(150))
+                .add(blue.mul(29))
+                .add(128)
+                .lanewise(VectorOperators.LSHR, 8);
+        return luma.mul(MAX_INDEX)
+                .add(127)
+                .mul(GLYPH_MULTIPLIER)
+                .lanewise(VectorOperators.LSHR, GLYPH_SHIFT);
+    }
+
+    private static @NotNull IntVector cubeLevel(final @NotNull IntVector channel) {
+        return channel.mul(10)
+                .add(255)
+                .mul(CUBE_MULTIPLIER)
+                .lanewise(VectorOperators.LSHR, CUBE_SHIFT);
+    }
+}
@@ -0,0 +1,248 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The header of the Conquade video data.
+ * <p>Video data without a version (version 0) starts directly with the fps byte, which is never 0.
+ * Versioned video data starts with a 0 byte followed by {@link VideoHeader#MAGIC} and the version byte.</p>
+ */
+public final class VideoHeader {
+    /**
+     * The bytes following the leading 0 byte of versioned video data.
+     */
+    public static final byte @NotNull [] MAGIC = {'C', 'Q', 'D'};
+    /**
+     * The version of the video data written by this Conquade version.
+     * <ul>
+     *     <li>0 - every frame is raw frame data</li>
+     *     <li>1 - keyframes and delta frames (see {@link VideoWriter})</li>
+     *     <li>2 - optionally compressed chunks of frames (see {@link VideoWriter})</li>
+     *     <li>3 - optionally baked frames (see {@link VideoWriter#BAKED_FRAME})</li>
+     * </ul>
+     */
+    public static final int VERSION = 3;
+    /**
+     * Frames are not compressed.
+     */
+    public static final int COMPRESSION_NONE = 0;
+    /**
+     * Frames are compressed in chunks using {@link java.util.zip.Deflater}.
+     */
+    public static final int COMPRESSION_DEFLATE = 1;
+
+    private final int version;
+    private final int fps;
+    private final int width;
+    private final int height;
+    private final boolean trueColor;
+    private final int keyframeInterval;
+    private final int compression;
+    private final @Nullable Player.ColorTarget bakedColorTarget;
+
+    /**
+     * Creates a new {@link VideoHeader}.
+     *
+     * @param version          the video data version
+     * @param fps              the video framerate
+     * @param width            the width of the frames
+     * @param height           the height of the frames
+     * @param trueColor        whether the frames are RGB color video frame data, 256 color video frame data otherwise
+     * @param keyframeInterval after how many frames a keyframe is written
+     * @param compression      how the frames are compressed
+     *                         ({@link VideoHeader#COMPRESSION_NONE} or {@link VideoHeader#COMPRESSION_DEFLATE})
+     * @param bakedColorTarget the color target the frames are baked for or null when the frames are not baked
+     */
+    public VideoHeader(final int version, final int fps, final int width, final int height, final boolean trueColor,
+                       final int keyframeInterval, final int compression, final @Nullable Player.ColorTarget bakedColorTarget) {
+        this.version = version;
+        this.fps = fps;
+        this.width = width;
+        this.height = height;
+        this.trueColor = trueColor;
+        this.keyframeInterval = keyframeInterval;
+        this.compression = compression;
+        this.bakedColorTarget = bakedColorTarget;
+    }
+
+    /**
+     * Creates a new {@link VideoHeader} of the current {@link VideoHeader#VERSION}.
+     *
+     * @param fps              the video framerate
+     * @param width            the width of the frames
+     * @param height           the height of the frames
+     * @param trueColor        whether the frames are RGB color video frame data, 256 color video frame data otherwise
+     * @param keyframeInterval after how many frames a keyframe is written
+     * @param compression      how the frames are compressed
+     *                         ({@link VideoHeader#COMPRESSION_NONE} or {@link VideoHeader#COMPRESSION_DEFLATE})
+     * @param bakedColorTarget the color target the frames are baked for or null when the frames are not baked
+     */
+    public VideoHeader(final int fps, final int width, final int height, final boolean trueColor, final int keyframeInterval,
+                       final int compression, final @Nullable Player.ColorTarget bakedColorTarget) {
+        this(VERSION, fps, width, height, trueColor, keyframeInterval, compression, bakedColorTarget);
+    }
+
+    /**
+     * Reads a header of any version.
+     *
+     * @param in the input to read from
+     * @return the read header
+     * @throws IOException              when the header could not be read
+     * @throws IllegalArgumentException when the header is not valid or its version is not supported
+     */
+    public static @NotNull VideoHeader read(final @NotNull DataInput in) throws IOException {
+        final int first = in.readUnsignedByte();
+        if (first != 0) { // version-less video data, the first byte is the fps
+            final int width = in.readInt();
+            final int height = in.readInt();
+            final boolean trueColor = in.readBoolean();
+            return new VideoHeader(0, first, width, height, trueColor, 1, COMPRESSION_NONE, null);
+        }
+        final byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++)
+            if (magic[i] != MAGIC[i])
+                throw new IllegalArgumentException("The video data is not valid Conquade video data!");
+        final int version = in.readUnsignedByte();
+        if (version > VERSION)
+            throw new IllegalArgumentException(("The video data version %d is not supported, " +
+                    "the newest supported version is %d!").formatted(version, VERSION));
+        final int fps = in.readUnsignedByte();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final boolean trueColor = in.readBoolean();
+        final int keyframeInterval = in.readInt();
+        final int compression = version >= 2 ? in.readUnsignedByte() : COMPRESSION_NONE;
+        if (compression != COMPRESSION_NONE && compression != COMPRESSION_DEFLATE)
+            throw new IllegalArgumentException("Unknown video data compression %d!".formatted(compression));
+        final int bakedColorTarget = version >= 3 ? in.readUnsignedByte() : 0; // 0 - not baked, color target ordinal + 1
+        final Player.ColorTarget[] colorTargets = Player.ColorTarget.values();
+        if (bakedColorTarget > colorTargets.length)
+            throw new IllegalArgumentException("Unknown baked color target %d!".formatted(bakedColorTarget));
+        return new VideoHeader(version, fps, width, height, trueColor, keyframeInterval, compression,
+                bakedColorTarget == 0 ? null : colorTargets[bakedColorTarget - 1]);
+    }
+
+    /**
+     * Writes this header in the current {@link VideoHeader#VERSION}.
+     *
+     * @param out the output to write to
+     * @throws IOException when the header could not be written
+     */
+    public void write(final @NotNull DataOutput out) throws IOException {
+        out.write(0);
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(fps);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeBoolean(trueColor);
+        out.writeInt(keyframeInterval);
+        out.write(compression);
+        out.write(bakedColorTarget == null ? 0 : bakedColorTarget.ordinal() + 1);
+    }
+
+    /**
+     * Returns the video data version.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the video framerate.
+     *
+     * @return the fps
+     */
+    public int getFps() {
+        return fps;
+    }
+
+    /**
+     * Returns the width of the frames.
+     *
+     * @return the frame width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the frames.
+     *
+     * @return the frame height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns whether the frames are RGB color video frame data, 256 color video frame data otherwise.
+     *
+     * @return whether the video is true color
+     */
+    public boolean isTrueColor() {
+        return trueColor;
+    }
+
+    /**
+     * Returns after how many frames a keyframe is written, 1 means every frame is a keyframe.
+     *
+     * @return the keyframe interval
+     */
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Returns how the frames are compressed ({@link VideoHeader#COMPRESSION_NONE} or {@link VideoHeader#COMPRESSION_DEFLATE}).
+     *
+     * @return the compression
+     */
+    public int getCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns whether the frames are stored as the final terminal output (see {@link VideoWriter#BAKED_FRAME}).
+     *
+     * @return whether the video is baked
+     */
+    public boolean isBaked() {
+        return bakedColorTarget != null;
+    }
+
+    /**
+     * Returns the color target the frames are baked for.
+     *
+     * @return the baked color target or null when the frames are not baked
+     */
+    public @Nullable Player.ColorTarget getBakedColorTarget() {
+        return bakedColorTarget;
+    }
+
+    /**
+     * Returns the size of one frame's video data in bytes.
+     *
+     * @return the frame data size
+     */
+    public int getFrameDataSize() {
+        return width * height * getCellSize();
+    }
+
+    /**
+     * Returns the size of one cell's video data in bytes.
+     *
+     * @return the cell size
+     */
+    public int getCellSize() {
+        return trueColor ? 4 : 2;
+    }
+}
@@ -0,0 +1,95 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The frame index of Conquade video data, stored next to the video data in a Conquade file.
+ * <p>The index contains the total number of frames and the offset of every keyframe written on the keyframe interval
+ * (see {@link VideoHeader#getKeyframeInterval()}), so any frame can be reached by jumping to the closest preceding
+ * keyframe and applying at most one keyframe interval of delta frames. When the video data is compressed,
+ * the offsets point to the chunks starting with these keyframes.</p>
+ * <p>The index is written as the long frame count, the int number of keyframes and the long offset of each keyframe,
+ * the offsets are relative to the start of the video data.</p>
+ */
+public final class VideoIndex {
+    private final long frameCount;
+    private final long @NotNull [] keyframeOffsets;
+
+    /**
+     * Creates a new {@link VideoIndex}.
+     *
+     * @param frameCount      the total number of frames
+     * @param keyframeOffsets the offsets of the keyframes written on the keyframe interval
+     */
+    public VideoIndex(final long frameCount, final long @NotNull [] keyframeOffsets) {
+        this.frameCount = frameCount;
+        this.keyframeOffsets = keyframeOffsets;
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param in the input to read from
+     * @return the read index
+     * @throws IOException              when the index could not be read
+     * @throws IllegalArgumentException when the index is not valid
+     */
+    public static @NotNull VideoIndex read(final @NotNull DataInput in) throws IOException {
+        final long frameCount = in.readLong();
+        final int keyframeCount = in.readInt();
+        if (frameCount < 0 || keyframeCount < 0)
+            throw new IllegalArgumentException("The video index is not valid!");
+        final long[] keyframeOffsets = new long[keyframeCount];
+        for (int i = 0; i < keyframeCount; i++)
+            keyframeOffsets[i] = in.readLong();
+        return new VideoIndex(frameCount, keyframeOffsets);
+    }
+
+    /**
+     * Writes this index.
+     *
+     * @param out the output to write to
+     * @throws IOException when the index could not be written
+     */
+    public void write(final @NotNull DataOutput out) throws IOException {
+        out.writeLong(frameCount);
+        out.writeInt(keyframeOffsets.length);
+        for (final long keyframeOffset : keyframeOffsets)
+            out.writeLong(keyframeOffset);
+    }
+
+    /**
+     * Returns the total number of frames.
+     *
+     * @return the frame count
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of indexed keyframes.
+     *
+     * @return the keyframe count
+     */
+    public int getKeyframeCount() {
+        return keyframeOffsets.length;
+    }
+
+    /**
+     * Returns the offset of an indexed keyframe.
+     *
+     * @param keyframe the index of the keyframe, the keyframe is the frame {@code keyframe × keyframe interval}
+     * @return the offset of the keyframe relative to the start of the video data
+     * @throws IllegalArgumentException when the keyframe is not indexed
+     */
+    public long getKeyframeOffset(final int keyframe) {
+        if (keyframe < 0 || keyframe >= keyframeOffsets.length)
+            throw new IllegalArgumentException("Keyframe %d is not indexed!".formatted(keyframe));
+        return keyframeOffsets[keyframe];
+    }
+}
@@ -0,0 +1,372 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Inflater;
+
+/**
+ * Reads Conquade video data written by {@link VideoWriter} or version-less video data.
+ * <p>Compressed chunks are decompressed ahead in a background thread, only a few chunks are held in memory at once
+ * and their arrays are reused for the next chunks.</p>
+ * <p>When the video data is read from a {@link MappedInputStream}, the reader can seek to any frame
+ * of version-less video data or of video data with a {@link VideoIndex}.</p>
+ */
+public final class VideoReader implements Closeable {
+    /**
+     * How many decompressed chunks can wait for being read.
+     */
+    public static final int CHUNK_READ_AHEAD = 2;
+
+    private final @NotNull DataInputStream in;
+    private final @Nullable MappedInputStream mappedIn;
+    private final @Nullable VideoIndex index;
+    private final @NotNull VideoHeader header;
+    private final int cellSize;
+    private final long dataOffset;
+    // the decompressed chunk arrays which were read and can be reused
+    private final @NotNull Queue<byte[]> freeChunks = new ConcurrentLinkedQueue<>();
+    private @Nullable ChunkInflater chunkInflater;
+    private byte @Nullable [] chunk;
+    private @NotNull DataInputStream frameIn;
+    private long frameId = 0;
+
+    private VideoReader(final @NotNull DataInputStream in, final @Nullable MappedInputStream mappedIn,
+                        final @Nullable VideoIndex index) throws IOException {
+        this.in = in;
+        this.mappedIn = mappedIn;
+        this.index = index;
+        header = VideoHeader.read(in);
+        cellSize = header.getCellSize();
+        dataOffset = mappedIn == null ? -1 : mappedIn.position();
+        if (header.getCompression() == VideoHeader.COMPRESSION_DEFLATE) {
+            chunkInflater = new ChunkInflater();
+            chunkInflater.start();
+            frameIn = new DataInputStream(InputStream.nullInputStream());
+        } else {
+            chunkInflater = null;
+            frameIn = in;
+        }
+    }
+
+    /**
+     * Creates a new {@link VideoReader} and reads the header.
+     *
+     * @param in the input to read from
+     * @throws IOException              when the header could not be read
+     * @throws IllegalArgumentException when the header is not valid
+     */
+    public VideoReader(final @NotNull DataInputStream in) throws IOException {
+        this(in, null, null);
+    }
+
+    /**
+     * Creates a new seekable {@link VideoReader} and reads the header.
+     *
+     * @param in    the memory mapped video data to read from
+     * @param index the index of the video data or null if the video data has no index
+     * @throws IOException              when the header could not be read
+     * @throws IllegalArgumentException when the header is not valid
+     */
+    public VideoReader(final @NotNull MappedInputStream in, final @Nullable VideoIndex index) throws IOException {
+        this(new DataInputStream(in), in, index);
+    }
+
+    /**
+     * Returns the header of the video.
+     *
+     * @return the header
+     */
+    public @NotNull VideoHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Reads the next frame.
+     * <p>Delta frames are applied on top of the array content, so the same array must be passed for every frame.</p>
+     *
+     * @param frameData the frame data of the previous frame, overwritten by the next frame
+     * @return true when a frame was read, false when there are no more frames
+     * @throws IOException              when the frame could not be read
+     * @throws IllegalArgumentException when the frame is not valid
+     * @throws IllegalStateException    when the video is baked
+     */
+    public boolean readFrame(final byte @NotNull [] frameData) throws IOException {
+        if (header.isBaked())
+            throw new IllegalStateException("The video is baked, its frames can only be read as terminal output!");
+        final int frameDataSize = header.getFrameDataSize();
+        if (header.getVersion() == 0) {
+            // a truncated last frame is the end of the data, like in getFrameCount()
+            if (in.readNBytes(frameData, 0, frameDataSize) != frameDataSize) return false;
+            frameId++;
+            return true;
+        }
+        final int type = readFrameType();
+        if (type == -1) return false;
+        final DataInputStream in = frameIn;
+        switch (type) {
+            case VideoWriter.KEYFRAME -> in.readFully(frameData, 0, frameDataSize);
+            case VideoWriter.DELTA_FRAME -> {
+                int cell = 0;
+                while (true) {
+                    cell += readVarInt(in);
+                    final int length = readVarInt(in);
+                    if (length == 0) break;
+                    if ((cell + length) * cellSize > frameDataSize)
+                        throw new IllegalArgumentException("Delta frame run exceeds the frame size!");
+                    in.readFully(frameData, cell * cellSize, length * cellSize);
+                    cell += length;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown frame type %d!".formatted(type));
+        }
+        frameId++;
+        return true;
+    }
+
+    /**
+     * Reads the terminal output of the next frame of a baked video (see {@link VideoHeader#isBaked()}).
+     *
+     * @param frame the buffer to clear and to append the terminal output of the frame to
+     * @return true when a frame was read, false when there are no more frames
+     * @throws IOException              when the frame could not be read
+     * @throws IllegalArgumentException when the frame is not valid
+     * @throws IllegalStateException    when the video is not baked
+     */
+    public boolean readFrame(final @NotNull AnsiBuffer frame) throws IOException {
+        if (!header.isBaked())
+            throw new IllegalStateException("The video is not baked, its frames can only be read as frame data!");
+        final int type = readFrameType();
+        if (type == -1) return false;
+        if (type != VideoWriter.BAKED_FRAME)
+            throw new IllegalArgumentException("Unknown frame type %d!".formatted(type));
+        frame.clear().append(frameIn, readVarInt(frameIn));
+        frameId++;
+        return true;
+    }
+
+    private int readFrameType() throws IOException {
+        int type = frameIn.read();
+        while (type == -1 && chunkInflater != null) { // move to the next chunk
+            if (chunk != null) freeChunks.add(chunk);
+            final Chunk next = chunkInflater.next();
+            if (next == null) {
+                chunk = null;
+                return -1;
+            }
+            chunk = next.data;
+            frameIn = new DataInputStream(new ByteArrayInputStream(next.data, 0, next.size));
+            type = frameIn.read();
+        }
+        return type;
+    }
+
+    private boolean skipBakedFrame() throws IOException {
+        final int type = readFrameType();
+        if (type == -1) return false;
+        if (type != VideoWriter.BAKED_FRAME)
+            throw new IllegalArgumentException("Unknown frame type %d!".formatted(type));
+        frameIn.skipNBytes(readVarInt(frameIn));
+        frameId++;
+        return true;
+    }
+
+    /**
+     * Returns the id of the frame that will be read next, the first frame has id 0.
+     *
+     * @return the next frame id
+     */
+    public long getFrameId() {
+        return frameId;
+    }
+
+    /**
+     * Returns the total number of frames if it is known.
+     *
+     * @return the frame count or -1 when it is not known
+     */
+    public long getFrameCount() {
+        if (index != null) return index.getFrameCount();
+        if (mappedIn != null && header.getVersion() == 0)
+            return (mappedIn.size() - dataOffset) / header.getFrameDataSize();
+        return -1;
+    }
+
+    /**
+     * Returns whether the reader can seek to any frame (see {@link VideoReader#seek(long, byte[])}).
+     *
+     * @return whether the reader is seekable
+     */
+    public boolean isSeekable() {
+        return mappedIn != null && (header.getVersion() == 0 || index != null);
+    }
+
+    /**
+     * Moves the reader, so the next read frame is the frame with the provided id.
+     * <p>The reader jumps directly to the closest preceding keyframe and applies the delta frames up to the requested
+     * frame, so at most one keyframe interval of frames is decoded.</p>
+     *
+     * @param frameId   the id of the frame to read next, it is clamped to the frames of the video
+     * @param frameData the array passed to {@link VideoReader#readFrame(byte[])},
+     *                  overwritten by the frame preceding the requested frame, not used when the video is baked
+     * @throws IOException           when the frames could not be read
+     * @throws IllegalStateException when the reader is not seekable
+     */
+    public void seek(final long frameId, final byte @NotNull [] frameData) throws IOException {
+        if (mappedIn == null)
+            throw new IllegalStateException("The video data can not be seeked, it is not memory mapped!");
+        final long target = Math.max(0, Math.min(frameId, getFrameCount()));
+        if (header.getVersion() == 0) {
+            mappedIn.seek(dataOffset + target * header.getFrameDataSize());
+            this.frameId = target;
+            return;
+        }
+        if (index == null)
+            throw new IllegalStateException("The video data can not be seeked, it has no index!");
+        final int keyframeInterval = header.getKeyframeInterval();
+        final int keyframe = (int) Math.min(target / keyframeInterval, index.getKeyframeCount() - 1);
+        if (keyframe < 0) return; // the video has no frames
+        if (chunkInflater != null) { // stop decompressing the current chunks
+            chunkInflater.interrupt();
+            try {
+                chunkInflater.join();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while seeking!", e);
+            }
+        }
+        mappedIn.seek(index.getKeyframeOffset(keyframe));
+        if (chunkInflater != null) {
+            if (chunk != null) freeChunks.add(chunk);
+            chunk = null;
+            chunkInflater = new ChunkInflater();
+            chunkInflater.start();
+            frameIn = new DataInputStream(InputStream.nullInputStream());
+        }
+        this.frameId = (long) keyframe * keyframeInterval;
+        while (this.frameId < target)
+            if (!(header.isBaked() ? skipBakedFrame() : readFrame(frameData))) break;
+    }
+
+    /**
+     * Stops decompressing chunks and closes the underlying input.
+     *
+     * @throws IOException when the input could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        final ChunkInflater chunkInflater = this.chunkInflater;
+        if (chunkInflater != null) chunkInflater.interrupt();
+        in.close();
+    }
+
+    /**
+     * A thread reading and decompressing chunks ahead of the reader.
+     */
+    private final class ChunkInflater extends Thread {
+        private static final @NotNull Chunk END = new Chunk(new byte[0], 0);
+
+        private final @NotNull BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(CHUNK_READ_AHEAD);
+        private volatile @Nullable Exception exception;
+
+        private ChunkInflater() {
+            super("chunk-inflater");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            final Inflater inflater = new Inflater();
+            byte[] compressedChunk = new byte[0];
+            try {
+                while (true) {
+                    final int size;
+                    try {
+                        size = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    final int compressedSize = in.readInt();
+                    if (compressedChunk.length < compressedSize)
+                        compressedChunk = new byte[compressedSize];
+                    in.readFully(compressedChunk, 0, compressedSize);
+                    if (size < 0 || compressedSize < 0)
+                        throw new IllegalArgumentException("Chunk size is not valid!");
+                    byte[] data = freeChunks.poll();
+                    if (data == null || data.length < size) data = new byte[size];
+                    inflater.reset();
+                    inflater.setInput(compressedChunk, 0, compressedSize);
+                    if (inflater.inflate(data, 0, size) != size || !inflater.finished())
+                        throw new IllegalArgumentException("Chunk size does not match the decompressed size!");
+                    chunks.put(new Chunk(data, size));
+                }
+            } catch (InterruptedException e) {
+                return; // the reader was closed
+            } catch (Exception e) {
+                exception = e;
+            } finally {
+                inflater.end();
+            }
+            try {
+                chunks.put(END);
+            } catch (InterruptedException ignored) {
+                // the reader was closed
+            }
+        }
+
+        /**
+         * Waits for the next decompressed chunk.
+         *
+         * @return the chunk or null when there are no more chunks
+         * @throws IOException when the chunk could not be read or decompressed
+         */
+        private @Nullable Chunk next() throws IOException {
+            final Chunk chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while waiting for a chunk!", e);
+            }
+            if (chunk != END) return chunk;
+            chunks.add(END); // keep returning null
+            final Exception exception = this.exception;
+            if (exception != null)
+                throw new IOException("Could not decompress chunk!", exception);
+            return null;
+        }
+    }
+
+    /**
+     * A decompressed chunk, its array can be longer than the chunk.
+     */
+    private static final class Chunk {
+        private final byte @NotNull [] data;
+        private final int size;
+
+        private Chunk(final byte @NotNull [] data, final int size) {
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Reads an int written by {@link VideoWriter#writeVarInt(java.io.DataOutput, int)}.
+     *
+     * @param in the input to read from
+     * @return the read value
+     * @throws IOException when the value could not be read
+     */
+    public static int readVarInt(final @NotNull DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint in the video data!");
+    }
+}
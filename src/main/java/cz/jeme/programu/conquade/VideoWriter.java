@@ -0,0 +1,274 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes Conquade video data.
+ * <p>Every frame starts with a frame type byte:</p>
+ * <ul>
+ *     <li>{@link VideoWriter#KEYFRAME} - followed by the whole frame data</li>
+ *     <li>{@link VideoWriter#DELTA_FRAME} - followed by runs of cells that changed since the previous frame,
+ *     each run is a varint count of unchanged cells to skip, a varint count of changed cells and their data.
+ *     The frame ends with a run of 0 changed cells.</li>
+ *     <li>{@link VideoWriter#BAKED_FRAME} - followed by a varint length and the terminal output of the frame</li>
+ * </ul>
+ * <p>When the video is compressed, the frames are grouped into chunks. Every keyframe written on the keyframe interval
+ * (see {@link VideoHeader#getKeyframeInterval()}) starts a new chunk, a chunk is also closed before it would grow over
+ * {@link VideoWriter#CHUNK_SIZE} bytes, so the chunks stay small with any keyframe interval. A chunk is written
+ * as the int uncompressed size, the int compressed size and the compressed frames, so it can be decompressed
+ * on its own.</p>
+ * <p>The offsets of the keyframes written on the keyframe interval are collected into a {@link VideoIndex}.</p>
+ */
+public final class VideoWriter {
+    /**
+     * A frame containing the whole frame data.
+     */
+    public static final int KEYFRAME = 0;
+    /**
+     * A frame containing only the cells that changed since the previous frame.
+     */
+    public static final int DELTA_FRAME = 1;
+    /**
+     * A frame containing the final terminal output for the baked color target (see {@link VideoHeader#isBaked()}).
+     * <p>Baked frames do not depend on each other and are printed as they are, without any conversion.</p>
+     */
+    public static final int BAKED_FRAME = 2;
+    /**
+     * The uncompressed size in bytes a chunk of a compressed video does not grow over,
+     * unless a single frame is larger.
+     */
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private final @NotNull DataOutputStream out;
+    private final @NotNull VideoHeader header;
+    private final int cellSize;
+    private final byte @NotNull [] previousFrame;
+    private final @NotNull ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final @NotNull DataOutputStream record = new DataOutputStream(recordBytes);
+    private final @Nullable Deflater deflater;
+    private final @NotNull ChunkBuffer chunkBytes = new ChunkBuffer();
+    private byte @NotNull [] compressedChunk = new byte[0];
+    private long @NotNull [] keyframeOffsets = new long[16];
+    private int keyframeCount = 0;
+    private long position;
+    private long frameId = 0;
+
+    /**
+     * Creates a new {@link VideoWriter} and writes the header.
+     *
+     * @param out              the output to write to, nothing must be written to it yet
+     * @param header           the header of the video
+     * @param compressionLevel the compression level (0-9) used when the header specifies compression
+     * @throws IOException when the header could not be written
+     */
+    public VideoWriter(final @NotNull DataOutputStream out, final @NotNull VideoHeader header, final int compressionLevel) throws IOException {
+        this.out = out;
+        this.header = header;
+        cellSize = header.getCellSize();
+        previousFrame = new byte[header.getFrameDataSize()];
+        deflater = header.getCompression() == VideoHeader.COMPRESSION_DEFLATE ? new Deflater(compressionLevel) : null;
+        header.write(out);
+        position = out.size();
+    }
+
+    /**
+     * Creates a new {@link VideoWriter} using the default compression level and writes the header.
+     *
+     * @param out    the output to write to, nothing must be written to it yet
+     * @param header the header of the video
+     * @throws IOException when the header could not be written
+     */
+    public VideoWriter(final @NotNull DataOutputStream out, final @NotNull VideoHeader header) throws IOException {
+        this(out, header, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Writes the next frame.
+     *
+     * @param frameData the frame data to write
+     * @throws IOException when the frame could not be written
+     */
+    public void writeFrame(final byte @NotNull [] frameData) throws IOException {
+        final int frameDataSize = previousFrame.length;
+        final boolean indexed = frameId % header.getKeyframeInterval() == 0;
+        recordBytes.reset();
+        if (indexed || !encodeDelta(frameData)) {
+            record.write(KEYFRAME);
+            record.write(frameData, 0, frameDataSize);
+        }
+        writeRecord(indexed);
+        System.arraycopy(frameData, 0, previousFrame, 0, frameDataSize);
+        frameId++;
+    }
+
+    /**
+     * Writes the next frame of a baked video.
+     *
+     * @param frame the terminal output of the frame
+     * @throws IOException when the frame could not be written
+     */
+    public void writeBakedFrame(final @NotNull AnsiBuffer frame) throws IOException {
+        recordBytes.reset();
+        record.write(BAKED_FRAME);
+        writeVarInt(record, frame.length());
+        record.write(frame.array(), 0, frame.length());
+        writeRecord(frameId % header.getKeyframeInterval() == 0);
+        frameId++;
+    }
+
+    private void writeRecord(final boolean indexed) throws IOException {
+        if (deflater == null) {
+            if (indexed) addKeyframeOffset();
+            recordBytes.writeTo(out);
+            position += recordBytes.size();
+        } else {
+            if (indexed || chunkBytes.size() + recordBytes.size() > CHUNK_SIZE) writeChunk(deflater);
+            if (indexed) addKeyframeOffset(); // the keyframe starts a new chunk
+            recordBytes.writeTo(chunkBytes);
+        }
+    }
+
+    /**
+     * Writes the frames that are not written yet. Must be called after the last frame was written.
+     *
+     * @throws IOException when the frames could not be written
+     */
+    public void finish() throws IOException {
+        if (deflater == null) return;
+        writeChunk(deflater);
+        deflater.end();
+    }
+
+    private void writeChunk(final @NotNull Deflater deflater) throws IOException {
+        if (chunkBytes.size() == 0) return;
+        deflater.reset();
+        deflater.setInput(chunkBytes.array(), 0, chunkBytes.size());
+        deflater.finish();
+        int compressedSize = 0;
+        while (!deflater.finished()) {
+            if (compressedSize == compressedChunk.length)
+                compressedChunk = Arrays.copyOf(compressedChunk, Math.max(4096, compressedChunk.length * 2));
+            compressedSize += deflater.deflate(compressedChunk, compressedSize, compressedChunk.length - compressedSize);
+        }
+        out.writeInt(chunkBytes.size());
+        out.writeInt(compressedSize);
+        out.write(compressedChunk, 0, compressedSize);
+        position += 2 * Integer.BYTES + compressedSize;
+        chunkBytes.reset();
+    }
+
+    private void addKeyframeOffset() {
+        if (keyframeCount == keyframeOffsets.length)
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeOffsets.length * 2);
+        keyframeOffsets[keyframeCount++] = position;
+    }
+
+    /**
+     * Writes a delta frame record.
+     *
+     * @param frameData the frame data
+     * @return false when the delta frame would not be smaller than a keyframe, nothing is written in that case
+     */
+    private boolean encodeDelta(final byte @NotNull [] frameData) throws IOException {
+        final int cells = previousFrame.length / cellSize;
+        record.write(DELTA_FRAME);
+        int runEnd = 0; // the cell after the last written run
+        int cell = 0;
+        while (cell < cells) {
+            if (!changed(frameData, cell)) {
+                cell++;
+                continue;
+            }
+            final int runStart = cell;
+            while (cell < cells && changed(frameData, cell)) cell++;
+            writeVarInt(record, runStart - runEnd);
+            writeVarInt(record, cell - runStart);
+            record.write(frameData, runStart * cellSize, (cell - runStart) * cellSize);
+            runEnd = cell;
+            if (recordBytes.size() > previousFrame.length) { // a keyframe is smaller
+                recordBytes.reset();
+                return false;
+            }
+        }
+        writeVarInt(record, 0);
+        writeVarInt(record, 0);
+        return true;
+    }
+
+    private boolean changed(final byte @NotNull [] frameData, final int cell) {
+        final int offset = cell * cellSize;
+        for (int i = 0; i < cellSize; i++)
+            if (frameData[offset + i] != previousFrame[offset + i]) return true;
+        return false;
+    }
+
+    /**
+     * Returns the number of frames written so far.
+     *
+     * @return the frame count
+     */
+    public long getFrameCount() {
+        return frameId;
+    }
+
+    /**
+     * Returns the header of the written video data.
+     *
+     * @return the video header
+     */
+    public @NotNull VideoHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns how many bytes were written to the output so far, including the header. The frames of a compressed video
+     * are counted when their chunk is written.
+     *
+     * @return the number of written bytes
+     */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /**
+     * Returns the index of the frames written so far. Should be called after {@link VideoWriter#finish()}.
+     *
+     * @return the frame index
+     */
+    public @NotNull VideoIndex getIndex() {
+        return new VideoIndex(frameId, Arrays.copyOf(keyframeOffsets, keyframeCount));
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} which lets the chunk be compressed straight from its buffer.
+     */
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+        private byte @NotNull [] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Writes a non-negative int using 7 bits per byte, the highest bit marks that another byte follows.
+     *
+     * @param out   the output to write to
+     * @param value the value to write
+     * @throws IOException when the value could not be written
+     */
+    public static void writeVarInt(final @NotNull DataOutput out, final int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+}
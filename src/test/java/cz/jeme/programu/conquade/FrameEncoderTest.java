@@ -0,0 +1,248 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Draws the output of {@link FrameEncoder} on a minimal terminal and checks the drawn cells, and that the delta output
+ * leaves the terminal exactly as the whole frame output does. Colors must be output only where they change.
+ */
+class FrameEncoderTest {
+    private static final int WIDTH = 17;
+    private static final int HEIGHT = 6;
+    private static final int FRAMES = 60;
+
+    @Test
+    void drawsEveryCell() {
+        for (final boolean trueColor : new boolean[]{false, true}) {
+            for (final Player.ColorTarget colorTarget : Player.ColorTarget.values()) {
+                final String name = "true color %b, %s".formatted(trueColor, colorTarget);
+                final int cellSize = trueColor ? 4 : 2;
+                final byte[][] frames = frames(new Random(trueColor ? 1 : 0), cellSize);
+                final FrameEncoder encoder = new FrameEncoder(WIDTH, HEIGHT, trueColor, colorTarget);
+                final AnsiBuffer output = new AnsiBuffer();
+                for (int i = 0; i < FRAMES; i++) {
+                    final Terminal terminal = new Terminal();
+                    encoder.encodeFrame(frames[i], output.clear());
+                    terminal.print(output.toString());
+                    for (int cell = 0; cell < WIDTH * HEIGHT; cell++)
+                        assertEquals(expectedCell(frames[i], cell, cellSize, colorTarget), terminal.cells[cell],
+                                "%s, frame %d, cell %d".formatted(name, i, cell));
+                    assertEquals(0, terminal.y, "%s, frame %d, cursor not on the first line".formatted(name, i));
+                    assertTrue(terminal.isDefaultColor(), "%s, frame %d, colors not reset".formatted(name, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void deltaOutputMatchesFullOutput() {
+        for (final boolean trueColor : new boolean[]{false, true}) {
+            for (final Player.ColorTarget colorTarget : Player.ColorTarget.values()) {
+                for (final int redrawInterval : new int[]{0, 5}) {
+                    checkDelta(trueColor, colorTarget, redrawInterval);
+                }
+            }
+        }
+    }
+
+    @Test
+    void redrawsWholeFrameOnRequest() {
+        final byte[][] frames = frames(new Random(7), 2);
+        final FrameEncoder full = new FrameEncoder(WIDTH, HEIGHT, false, Player.ColorTarget.TEXT_ONLY);
+        final FrameEncoder delta = new FrameEncoder(WIDTH, HEIGHT, false, Player.ColorTarget.TEXT_ONLY, true, 0);
+        final AnsiBuffer fullOutput = new AnsiBuffer();
+        final AnsiBuffer deltaOutput = new AnsiBuffer();
+        for (int i = 0; i < FRAMES; i++) {
+            if (i % 13 == 0) delta.requestRedraw();
+            full.encodeFrame(frames[i], fullOutput.clear());
+            delta.encodeFrame(frames[i], deltaOutput.clear());
+            if (i % 13 == 0) // the first frame is always whole
+                assertEquals(fullOutput.toString(), deltaOutput.toString(), "frame %d".formatted(i));
+        }
+    }
+
+    @Test
+    void unchangedFrameOutputsNoCells() {
+        final byte[][] frames = frames(new Random(3), 4);
+        final FrameEncoder delta = new FrameEncoder(WIDTH, HEIGHT, true, Player.ColorTarget.BLACK_TEXT, true, 0);
+        final AnsiBuffer output = new AnsiBuffer();
+        delta.encodeFrame(frames[0], output);
+        delta.encodeFrame(frames[0], output.clear());
+        assertEquals("\r", output.toString());
+    }
+
+    @Test
+    void outputsColorOncePerRun() {
+        final int run = 5; // cells of the same color next to each other
+        final int runs = (WIDTH + run - 1) / run;
+        for (final boolean trueColor : new boolean[]{false, true}) {
+            for (final Player.ColorTarget colorTarget : Player.ColorTarget.values()) {
+                final int cellSize = trueColor ? 4 : 2;
+                final byte[] frame = new byte[WIDTH * HEIGHT * cellSize];
+                final Random random = new Random(run);
+                for (int cell = 0; cell < WIDTH * HEIGHT; cell++) {
+                    frame[cell * cellSize] = (byte) random.nextInt(Conquade.CHARACTERS.length());
+                    for (int i = 1; i < cellSize; i++)
+                        frame[cell * cellSize + i] = (byte) (cell % WIDTH / run + 1);
+                }
+                final AnsiBuffer output = new AnsiBuffer();
+                new FrameEncoder(WIDTH, HEIGHT, trueColor, colorTarget).encodeFrame(frame, output);
+                // a color code for every run, the black text color once per line, a reset per line and the cursor up
+                final int black = colorTarget == Player.ColorTarget.BLACK_TEXT ? 1 : 0;
+                final long codes = output.toString().chars().filter(c -> c == AnsiHelper.ESC).count();
+                assertEquals(HEIGHT * (runs + black + 1) + 1, codes, "true color %b, %s".formatted(trueColor, colorTarget));
+            }
+        }
+    }
+
+    private static void checkDelta(final boolean trueColor, final @NotNull Player.ColorTarget colorTarget, final int redrawInterval) {
+        final String name = "true color %b, %s, redraw interval %d".formatted(trueColor, colorTarget, redrawInterval);
+        final byte[][] frames = frames(new Random(redrawInterval * 2L + (trueColor ? 1 : 0)), trueColor ? 4 : 2);
+        final FrameEncoder full = new FrameEncoder(WIDTH, HEIGHT, trueColor, colorTarget);
+        final FrameEncoder delta = new FrameEncoder(WIDTH, HEIGHT, trueColor, colorTarget, true, redrawInterval);
+        final AnsiBuffer output = new AnsiBuffer();
+        final Terminal deltaTerminal = new Terminal();
+        long deltaBytes = 0;
+        long fullBytes = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            final Terminal fullTerminal = new Terminal();
+            full.encodeFrame(frames[i], output.clear());
+            fullTerminal.print(output.toString());
+            fullBytes += output.length();
+
+            delta.encodeFrame(frames[i], output.clear());
+            deltaTerminal.print(output.toString());
+            deltaBytes += output.length();
+
+            assertEquals(fullTerminal.toString(), deltaTerminal.toString(), "%s, frame %d".formatted(name, i));
+            assertEquals(0, deltaTerminal.y, "%s, frame %d, cursor not on the first line".formatted(name, i));
+            assertTrue(deltaTerminal.isDefaultColor(), "%s, frame %d, colors not reset".formatted(name, i));
+        }
+        assertTrue(deltaBytes < fullBytes, "%s, delta output is not smaller".formatted(name));
+    }
+
+    /**
+     * Returns the cell the way {@link Terminal} stores it.
+     */
+    private static @NotNull String expectedCell(final byte @NotNull [] frame, final int cell, final int cellSize,
+                                                final @NotNull Player.ColorTarget colorTarget) {
+        final int offset = cell * cellSize;
+        final char glyph = Conquade.CHARACTERS.charAt(frame[offset]);
+        final String color = cellSize == 2
+                ? "5;%d".formatted(frame[offset + 1] & 0xFF)
+                : "2;%d;%d;%d".formatted(frame[offset + 1] & 0xFF, frame[offset + 2] & 0xFF, frame[offset + 3] & 0xFF);
+        final String black = cellSize == 2 ? "5;0" : "2;0;0;0";
+        return switch (colorTarget) {
+            case TEXT_ONLY -> glyph + "|" + color + "|";
+            case HIGHLIGHT_ONLY -> " ||" + color;
+            case BLACK_TEXT -> glyph + "|" + black + "|" + color;
+        };
+    }
+
+    /**
+     * Creates frames with a few changed cells between them, some of them changing only the color or only the glyph.
+     */
+    private static byte @NotNull [] @NotNull [] frames(final @NotNull Random random, final int cellSize) {
+        final int cells = WIDTH * HEIGHT;
+        final int colors = 4; // few colors, so neighbouring cells often share a color
+        final byte[][] frames = new byte[FRAMES][];
+        for (int i = 0; i < FRAMES; i++) {
+            final byte[] frame = new byte[cells * cellSize];
+            if (i == 0) {
+                for (int cell = 0; cell < cells; cell++)
+                    randomCell(random, frame, cell, cellSize, colors);
+            } else {
+                System.arraycopy(frames[i - 1], 0, frame, 0, frame.length);
+                final int changes = random.nextInt(cells / 5);
+                for (int change = 0; change < changes; change++) {
+                    final int cell = random.nextInt(cells);
+                    switch (random.nextInt(3)) {
+                        case 0 -> frame[cell * cellSize] = (byte) random.nextInt(Conquade.CHARACTERS.length());
+                        case 1 -> frame[cell * cellSize + 1] = (byte) random.nextInt(colors);
+                        default -> randomCell(random, frame, cell, cellSize, colors);
+                    }
+                }
+            }
+            frames[i] = frame;
+        }
+        return frames;
+    }
+
+    private static void randomCell(final @NotNull Random random, final byte @NotNull [] frame, final int cell,
+                                   final int cellSize, final int colors) {
+        final int offset = cell * cellSize;
+        frame[offset] = (byte) random.nextInt(Conquade.CHARACTERS.length());
+        for (int i = 1; i < cellSize; i++)
+            frame[offset + i] = (byte) random.nextInt(colors);
+    }
+
+    /**
+     * A terminal understanding only the output of {@link FrameEncoder}: cursor movement and SGR colors.
+     */
+    private static final class Terminal {
+        private final @NotNull String @NotNull [] cells = new String[WIDTH * HEIGHT];
+        private int x = 0;
+        private int y = 0;
+        private @NotNull String foreground = "";
+        private @NotNull String background = "";
+
+        private void print(final @NotNull String output) {
+            for (int i = 0; i < output.length(); i++) {
+                final char c = output.charAt(i);
+                switch (c) {
+                    case '\r' -> x = 0;
+                    case '\n' -> {
+                        x = 0;
+                        y++;
+                    }
+                    case AnsiHelper.ESC -> {
+                        assertEquals('[', output.charAt(++i));
+                        final int start = i + 1;
+                        do i++; while (!Character.isLetter(output.charAt(i)));
+                        control(output.substring(start, i), output.charAt(i));
+                    }
+                    default -> {
+                        assertTrue(x < WIDTH && y >= 0 && y < HEIGHT, "Cell printed outside of the frame");
+                        cells[y * WIDTH + x] = c + "|" + foreground + "|" + background;
+                        x++;
+                    }
+                }
+            }
+        }
+
+        private void control(final @NotNull String parameters, final char command) {
+            switch (command) {
+                case 'A' -> y -= Integer.parseInt(parameters);
+                case 'B' -> y += Integer.parseInt(parameters);
+                case 'C' -> x += Integer.parseInt(parameters);
+                case 'm' -> {
+                    if (parameters.equals("0")) {
+                        foreground = "";
+                        background = "";
+                    } else if (parameters.startsWith("38;")) {
+                        foreground = parameters.substring(3);
+                    } else if (parameters.startsWith("48;")) {
+                        background = parameters.substring(3);
+                    } else {
+                        fail("Unknown SGR parameters %s".formatted(parameters));
+                    }
+                }
+                default -> fail("Unknown control %s%c".formatted(parameters, command));
+            }
+        }
+
+        private boolean isDefaultColor() {
+            return foreground.isEmpty() && background.isEmpty();
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return String.join(",", cells);
+        }
+    }
+}
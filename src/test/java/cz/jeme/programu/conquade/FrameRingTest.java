@@ -0,0 +1,176 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameRingTest {
+    private static final long TIMEOUT = 10_000; // ms
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameRing(0));
+        assertEquals(3, new FrameRing(3).capacity());
+    }
+
+    @Test
+    void deliversFramesInOrder() throws InterruptedException {
+        final int frames = 100_000;
+        final FrameRing ring = new FrameRing(4);
+        final Producer producer = new Producer(ring, frames) {
+            @Override
+            void produce(final @NotNull FrameRing.Slot slot, final long frameId) {
+                slot.setFrameId(frameId);
+                slot.getFrame().clear().appendDecimal((int) frameId);
+            }
+        };
+        producer.start();
+        for (long frameId = 0; frameId < frames; frameId++) {
+            final FrameRing.Slot slot = ring.take();
+            assertNotNull(slot, "frame %d".formatted(frameId));
+            assertEquals(frameId, slot.getFrameId());
+            assertEquals(Long.toString(frameId), slot.getFrame().toString());
+            assertTrue(ring.size() >= 1 && ring.size() <= ring.capacity());
+            ring.release();
+        }
+        assertNull(ring.take(), "the producer finished");
+        producer.await();
+    }
+
+    @Test
+    void skipsFramesOfOldEpochs() throws InterruptedException {
+        final FrameRing ring = new FrameRing(8);
+        final int frames = 1_000;
+        final long seekFrameId = 700;
+        final Producer producer = new Producer(ring, frames) {
+            private long nextFrameId = 0;
+            private int epoch = 0;
+
+            @Override
+            void produce(final @NotNull FrameRing.Slot slot, final long ignored) {
+                final int requestedEpoch = this.requestedEpoch;
+                if (requestedEpoch != epoch) { // like the player, the frames after the seek have the new epoch
+                    nextFrameId = requestedFrameId;
+                    epoch = requestedEpoch;
+                }
+                slot.setFrameId(nextFrameId++);
+                slot.setEpoch(epoch);
+            }
+        };
+        producer.start();
+
+        // take a few frames, then move to another frame while the ring is full of the old frames
+        for (long frameId = 0; frameId < 5; frameId++) {
+            final FrameRing.Slot slot = takeFrame(ring, 0);
+            assertNotNull(slot);
+            assertEquals(frameId, slot.getFrameId());
+            ring.release();
+        }
+        producer.requestSeek(seekFrameId, 1);
+        long expected = seekFrameId;
+        FrameRing.Slot slot;
+        while ((slot = takeFrame(ring, 1)) != null) {
+            assertEquals(1, slot.getEpoch());
+            assertEquals(expected++, slot.getFrameId());
+            ring.release();
+        }
+        assertTrue(expected > seekFrameId, "no frames after the seek");
+        producer.await();
+    }
+
+    @Test
+    void closeReleasesWaitingProducer() throws InterruptedException {
+        final FrameRing ring = new FrameRing(2);
+        final Producer producer = new Producer(ring, Long.MAX_VALUE) {
+            @Override
+            void produce(final @NotNull FrameRing.Slot slot, final long frameId) {
+                slot.setFrameId(frameId);
+            }
+        };
+        producer.start();
+        while (ring.size() < ring.capacity()) Thread.onSpinWait(); // the producer waits for a free slot
+        ring.close();
+        producer.await();
+        assertTrue(producer.closed, "claim() did not return null");
+    }
+
+    @Test
+    void finishedEmptyRingReturnsNull() {
+        final FrameRing ring = new FrameRing(2);
+        final FrameRing.Slot slot = ring.claim();
+        assertNotNull(slot);
+        slot.setFrameId(42);
+        ring.publish();
+        ring.finish();
+        final FrameRing.Slot taken = ring.take();
+        assertSame(slot, taken);
+        assertEquals(42, taken.getFrameId());
+        ring.release();
+        assertNull(ring.take());
+        assertEquals(0, ring.size());
+    }
+
+    /**
+     * Takes the next frame of an epoch like the player does.
+     */
+    private static @Nullable FrameRing.Slot takeFrame(final @NotNull FrameRing ring, final int epoch) {
+        while (true) {
+            final FrameRing.Slot slot = ring.take();
+            if (slot == null || slot.getEpoch() == epoch) return slot;
+            ring.release();
+        }
+    }
+
+    private abstract static class Producer extends Thread {
+        private final @NotNull FrameRing ring;
+        private final long frames;
+        private final @NotNull AtomicReference<Throwable> failure = new AtomicReference<>();
+        volatile long requestedFrameId;
+        volatile int requestedEpoch = 0;
+        volatile boolean closed = false;
+
+        private Producer(final @NotNull FrameRing ring, final long frames) {
+            super("test-producer");
+            setDaemon(true);
+            this.ring = ring;
+            this.frames = frames;
+        }
+
+        abstract void produce(final @NotNull FrameRing.Slot slot, final long frameId);
+
+        void requestSeek(final long frameId, final int epoch) {
+            requestedFrameId = frameId;
+            requestedEpoch = epoch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (long frameId = 0; frameId < frames; frameId++) {
+                    final FrameRing.Slot slot = ring.claim();
+                    if (slot == null) {
+                        closed = true;
+                        return;
+                    }
+                    produce(slot, frameId);
+                    ring.publish();
+                }
+                ring.finish();
+            } catch (Throwable t) {
+                failure.set(t);
+                ring.finish();
+            }
+        }
+
+        void await() throws InterruptedException {
+            join(TIMEOUT);
+            assertFalse(isAlive(), "the producer did not finish");
+            final Throwable failure = this.failure.get();
+            if (failure != null) fail("the producer failed", failure);
+        }
+    }
+}
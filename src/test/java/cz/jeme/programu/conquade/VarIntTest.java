@@ -0,0 +1,60 @@
+package cz.jeme.programu.conquade;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VarIntTest {
+    @Test
+    void roundTripsEdgeValues() throws IOException {
+        // every value with the number of bytes it takes, at both ends of every byte count
+        final int[][] values = {
+                {0, 1}, {1, 1}, {127, 1},
+                {128, 2}, {255, 2}, {16_383, 2},
+                {16_384, 3}, {2_097_151, 3},
+                {2_097_152, 4}, {268_435_455, 4},
+                {268_435_456, 5}, {Integer.MAX_VALUE, 5}
+        };
+        for (final int[] value : values) {
+            final byte[] bytes = write(value[0]);
+            assertEquals(value[1], bytes.length, "Bytes of %d".formatted(value[0]));
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            assertEquals(value[0], VideoReader.readVarInt(in));
+            assertEquals(-1, in.read(), "Bytes left after %d".formatted(value[0]));
+        }
+    }
+
+    @Test
+    void readsConsecutiveValues() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (int value = 0; value < 70_000; value += 7)
+            VideoWriter.writeVarInt(out, value);
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value = 0; value < 70_000; value += 7)
+            assertEquals(value, VideoReader.readVarInt(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void rejectsTooLongValue() {
+        final byte[] bytes = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        assertThrows(IllegalArgumentException.class,
+                () -> VideoReader.readVarInt(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test
+    void failsOnTruncatedValue() {
+        final byte[] bytes = {(byte) 0xFF, (byte) 0xFF};
+        assertThrows(EOFException.class,
+                () -> VideoReader.readVarInt(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    private static byte[] write(final int value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        VideoWriter.writeVarInt(new DataOutputStream(bytes), value);
+        return bytes.toByteArray();
+    }
+}
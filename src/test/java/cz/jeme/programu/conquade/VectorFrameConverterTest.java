@@ -0,0 +1,116 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the Vector API conversion outputs exactly what the scalar conversion does, also for the pixels that
+ * do not fill a whole lane. Skipped when the {@code jdk.incubator.vector} module or large enough vectors are missing.
+ */
+class VectorFrameConverterTest {
+    // none of them is a multiple of the lane count, except for 80 and 240 with some vector sizes
+    private static final int @NotNull [] WIDTHS = {1, 2, 3, 5, 7, 9, 13, 15, 17, 31, 33, 37, 63, 65, 79, 80, 201, 240};
+    private static final int @NotNull [] HEIGHTS = {1, 3};
+
+    @Test
+    void matchesScalarConversion256() {
+        final FrameConverter converter = vectorConverter();
+        final Random random = new Random(256);
+        for (final int width : WIDTHS) {
+            for (final int height : HEIGHTS) {
+                final int pixels = width * height;
+                final byte[] rgbFrame = randomFrame(random, pixels);
+                final byte[] data = new byte[pixels * 2]; // exactly the size, the vector stores must stay in it
+                converter.renderFrame256(rgbFrame, pixels, data);
+                for (int i = 0; i < pixels; i++) {
+                    final int red = rgbFrame[3 * i] & 0xFF;
+                    final int green = rgbFrame[3 * i + 1] & 0xFF;
+                    final int blue = rgbFrame[3 * i + 2] & 0xFF;
+                    final String pixel = "%d×%d, pixel %d".formatted(width, height, i);
+                    assertEquals(Renderer.glyphIndex(red, green, blue), data[2 * i] & 0xFF, pixel);
+                    assertEquals(AnsiHelper.toAnsi256(red, green, blue), data[2 * i + 1] & 0xFF, pixel);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesScalarConversionRGB() {
+        final FrameConverter converter = vectorConverter();
+        final Random random = new Random(24);
+        for (final int width : WIDTHS) {
+            for (final int height : HEIGHTS) {
+                final int pixels = width * height;
+                final byte[] rgbFrame = randomFrame(random, pixels);
+                final byte[] data = new byte[pixels * 4];
+                converter.renderFrameRGB(rgbFrame, pixels, data);
+                for (int i = 0; i < pixels; i++) {
+                    final int red = rgbFrame[3 * i] & 0xFF;
+                    final int green = rgbFrame[3 * i + 1] & 0xFF;
+                    final int blue = rgbFrame[3 * i + 2] & 0xFF;
+                    final String pixel = "%d×%d, pixel %d".formatted(width, height, i);
+                    assertEquals(Renderer.glyphIndex(red, green, blue), data[4 * i] & 0xFF, pixel);
+                    assertEquals(red, data[4 * i + 1] & 0xFF, pixel);
+                    assertEquals(green, data[4 * i + 2] & 0xFF, pixel);
+                    assertEquals(blue, data[4 * i + 3] & 0xFF, pixel);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesScalarConversionForEveryChannelValue() {
+        final FrameConverter converter = vectorConverter();
+        // every value of every channel, combined with the other channels at the edges of the color cube levels
+        final int[] others = {0, 25, 26, 76, 77, 127, 128, 178, 179, 229, 230, 255};
+        final int pixels = 256 * others.length * others.length * 3;
+        final byte[] rgbFrame = new byte[pixels * 3];
+        int pixel = 0;
+        for (int channel = 0; channel < 3; channel++) {
+            for (int value = 0; value < 256; value++) {
+                for (final int first : others) {
+                    for (final int second : others) {
+                        final int[] rgb = channel == 0 ? new int[]{value, first, second}
+                                : channel == 1 ? new int[]{first, value, second}
+                                : new int[]{first, second, value};
+                        for (int i = 0; i < 3; i++)
+                            rgbFrame[3 * pixel + i] = (byte) rgb[i];
+                        pixel++;
+                    }
+                }
+            }
+        }
+        final byte[] data = new byte[pixels * 2];
+        converter.renderFrame256(rgbFrame, pixels, data);
+        for (int i = 0; i < pixels; i++) {
+            final int red = rgbFrame[3 * i] & 0xFF;
+            final int green = rgbFrame[3 * i + 1] & 0xFF;
+            final int blue = rgbFrame[3 * i + 2] & 0xFF;
+            final String color = "color %d, %d, %d".formatted(red, green, blue);
+            assertEquals(Renderer.glyphIndex(red, green, blue), data[2 * i] & 0xFF, color);
+            assertEquals(AnsiHelper.toAnsi256(red, green, blue), data[2 * i + 1] & 0xFF, color);
+        }
+    }
+
+    private static @NotNull FrameConverter vectorConverter() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "The jdk.incubator.vector module is not available");
+        try {
+            return new VectorFrameConverter();
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, e.getMessage());
+            throw e;
+        }
+    }
+
+    private static byte @NotNull [] randomFrame(final @NotNull Random random, final int pixels) {
+        final byte[] rgbFrame = new byte[pixels * 3];
+        random.nextBytes(rgbFrame);
+        return rgbFrame;
+    }
+}
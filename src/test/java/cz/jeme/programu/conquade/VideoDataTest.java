@@ -0,0 +1,328 @@
+package cz.jeme.programu.conquade;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes videos with {@link VideoWriter} and reads them back with {@link VideoReader}, in every version of the video
+ * data, both color modes, with and without compression, with a keyframe on every frame and on every Nth frame,
+ * and baked videos.
+ * <p>Every video is read sequentially and through seeks with its index.</p>
+ */
+class VideoDataTest {
+    private static final int FPS = 30;
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 7;
+    private static final int FRAMES = 50;
+    private static final int KEYFRAME_INTERVAL = 8;
+    private static final int COMPRESSION_LEVEL = 6;
+    // the size of the version 3 header, the older headers lack its last bytes
+    private static final int HEADER_SIZE = 21;
+
+    @Test
+    void roundTripsEveryFormat() throws IOException {
+        for (int version = 1; version <= VideoHeader.VERSION; version++) {
+            for (final boolean trueColor : new boolean[]{false, true}) {
+                for (final int compression : new int[]{VideoHeader.COMPRESSION_NONE, VideoHeader.COMPRESSION_DEFLATE}) {
+                    if (compression != VideoHeader.COMPRESSION_NONE && version < 2) continue; // not supported
+                    for (final int keyframeInterval : new int[]{1, KEYFRAME_INTERVAL}) {
+                        final String name = "version %d, true color %b, compression %d, keyframe interval %d"
+                                .formatted(version, trueColor, compression, keyframeInterval);
+                        checkFrames(version, new VideoHeader(FPS, WIDTH, HEIGHT, trueColor, keyframeInterval, compression, null), name);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void roundTripsBakedFrames() throws IOException {
+        for (final int compression : new int[]{VideoHeader.COMPRESSION_NONE, VideoHeader.COMPRESSION_DEFLATE}) {
+            for (final int keyframeInterval : new int[]{1, KEYFRAME_INTERVAL}) {
+                final String name = "baked, compression %d, keyframe interval %d".formatted(compression, keyframeInterval);
+                final VideoHeader header = new VideoHeader(FPS, WIDTH, HEIGHT, true, keyframeInterval, compression,
+                        Player.ColorTarget.BLACK_TEXT);
+                final String[] frames = bakedFrames(new Random(keyframeInterval));
+
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final VideoWriter writer = new VideoWriter(new DataOutputStream(bytes), header, COMPRESSION_LEVEL);
+                final AnsiBuffer frame = new AnsiBuffer();
+                for (final String text : frames)
+                    writer.writeBakedFrame(frame.clear().append(text.getBytes()));
+                writer.finish();
+                final byte[] data = bytes.toByteArray();
+                final VideoIndex index = writer.getIndex();
+                assertEquals(FRAMES, index.getFrameCount(), name);
+
+                try (final VideoReader reader = new VideoReader(new DataInputStream(new ByteArrayInputStream(data)))) {
+                    assertTrue(reader.getHeader().isBaked(), name);
+                    assertEquals(Player.ColorTarget.BLACK_TEXT, reader.getHeader().getBakedColorTarget(), name);
+                    assertThrows(IllegalStateException.class, () -> reader.readFrame(new byte[header.getFrameDataSize()]));
+                    for (int i = 0; i < FRAMES; i++) {
+                        assertTrue(reader.readFrame(frame), name);
+                        assertEquals(frames[i], frame.toString(), "%s, frame %d".formatted(name, i));
+                    }
+                    assertFalse(reader.readFrame(frame), name);
+                }
+
+                withMappedReader(data, index, reader -> {
+                    for (final long target : seekTargets(keyframeInterval)) {
+                        reader.seek(target, new byte[0]);
+                        assertEquals(Math.max(0, Math.min(target, FRAMES)), reader.getFrameId(), "%s, seek to %d".formatted(name, target));
+                        if (target >= FRAMES) {
+                            assertFalse(reader.readFrame(frame), name);
+                            continue;
+                        }
+                        assertTrue(reader.readFrame(frame), name);
+                        assertEquals(frames[(int) Math.max(0, target)], frame.toString(), "%s, seek to %d".formatted(name, target));
+                    }
+                });
+            }
+        }
+    }
+
+    @Test
+    void boundsCompressedChunks() throws IOException {
+        // whole frames of noise, the chunks are closed on their size long before the next keyframe
+        final int width = 200;
+        final int height = 60;
+        final int frameCount = 100;
+        final VideoHeader header = new VideoHeader(FPS, width, height, true, 100_000, VideoHeader.COMPRESSION_DEFLATE, null);
+        final Random random = new Random(42);
+        final byte[][] frames = new byte[frameCount][header.getFrameDataSize()];
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final VideoWriter writer = new VideoWriter(new DataOutputStream(bytes), header, 1);
+        for (final byte[] frame : frames) {
+            random.nextBytes(frame);
+            writer.writeFrame(frame);
+        }
+        writer.finish();
+        final byte[] data = bytes.toByteArray();
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        VideoHeader.read(in);
+        int chunks = 0;
+        while (in.available() > 0) {
+            final int size = in.readInt();
+            assertTrue(size <= VideoWriter.CHUNK_SIZE, "chunk %d has %d bytes".formatted(chunks, size));
+            in.skipNBytes(in.readInt());
+            chunks++;
+        }
+        assertTrue(chunks > 1, "the frames were not split into chunks");
+        try (final VideoReader reader = new VideoReader(new DataInputStream(new ByteArrayInputStream(data)))) {
+            readAll(reader, frames, "large chunks");
+        }
+        withMappedReader(data, writer.getIndex(), reader -> {
+            final byte[] frame = new byte[header.getFrameDataSize()];
+            for (final long target : new long[]{frameCount / 2, 3, frameCount - 1}) {
+                reader.seek(target, frame);
+                assertTrue(reader.readFrame(frame), "large chunks, seek to %d".formatted(target));
+                assertArrayEquals(frames[(int) target], frame, "large chunks, seek to %d".formatted(target));
+            }
+        });
+    }
+
+    @Test
+    void roundTripsVersionlessData() throws IOException {
+        for (final boolean trueColor : new boolean[]{false, true}) {
+            final String name = "version 0, true color %b".formatted(trueColor);
+            final byte[][] frames = frames(new Random(0), trueColor ? 4 : 2);
+            final byte[] data = versionless(trueColor, frames);
+
+            try (final VideoReader reader = new VideoReader(new DataInputStream(new ByteArrayInputStream(data)))) {
+                assertEquals(0, reader.getHeader().getVersion(), name);
+                readAll(reader, frames, name);
+            }
+            withMappedReader(data, null, reader -> {
+                assertEquals(FRAMES, reader.getFrameCount(), name);
+                assertTrue(reader.isSeekable(), name);
+                checkSeeks(reader, frames, 1, name);
+            });
+        }
+    }
+
+    @Test
+    void stopsBeforeTruncatedVersionlessFrame() throws IOException {
+        final byte[][] frames = frames(new Random(1), 2);
+        final byte[] complete = versionless(false, frames);
+        final byte[] data = Arrays.copyOf(complete, complete.length - frames[0].length / 2); // half of the last frame
+
+        try (final VideoReader reader = new VideoReader(new DataInputStream(new ByteArrayInputStream(data)))) {
+            readAll(reader, Arrays.copyOf(frames, FRAMES - 1), "truncated");
+        }
+        withMappedReader(data, null, reader -> assertEquals(FRAMES - 1, reader.getFrameCount()));
+    }
+
+    private static void checkFrames(final int version, final @NotNull VideoHeader header, final @NotNull String name) throws IOException {
+        final byte[][] frames = frames(new Random(version * 31L + header.getKeyframeInterval()), header.getCellSize());
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final VideoWriter writer = new VideoWriter(new DataOutputStream(bytes), header, COMPRESSION_LEVEL);
+        for (final byte[] frame : frames)
+            writer.writeFrame(frame);
+        writer.finish();
+        assertEquals(FRAMES, writer.getFrameCount(), name);
+        final byte[] written = bytes.toByteArray();
+        assertEquals(written.length, writer.getBytesWritten(), name);
+        if (header.getKeyframeInterval() > 1 && header.getCompression() == VideoHeader.COMPRESSION_NONE)
+            assertTrue(written.length < HEADER_SIZE + FRAMES * (1L + header.getFrameDataSize()), "%s, no delta frames".formatted(name));
+
+        final VideoIndex writtenIndex = writer.getIndex();
+        assertEquals(FRAMES, writtenIndex.getFrameCount(), name);
+        assertEquals((FRAMES + header.getKeyframeInterval() - 1) / header.getKeyframeInterval(),
+                writtenIndex.getKeyframeCount(), name);
+        final byte[] data = version == VideoHeader.VERSION ? written : downgrade(written, version);
+        final VideoIndex index = version == VideoHeader.VERSION ? writtenIndex : downgrade(writtenIndex, version);
+
+        try (final VideoReader reader = new VideoReader(new DataInputStream(new ByteArrayInputStream(data)))) {
+            final VideoHeader readHeader = reader.getHeader();
+            assertEquals(version, readHeader.getVersion(), name);
+            assertEquals(header.isTrueColor(), readHeader.isTrueColor(), name);
+            assertEquals(header.getKeyframeInterval(), readHeader.getKeyframeInterval(), name);
+            assertEquals(header.getCompression(), readHeader.getCompression(), name);
+            assertFalse(reader.isSeekable(), name);
+            readAll(reader, frames, name);
+        }
+        withMappedReader(data, index, reader -> {
+            assertEquals(FRAMES, reader.getFrameCount(), name);
+            assertTrue(reader.isSeekable(), name);
+            readAll(reader, frames, name);
+            checkSeeks(reader, frames, header.getKeyframeInterval(), name);
+        });
+    }
+
+    private static void readAll(final @NotNull VideoReader reader, final byte @NotNull [] @NotNull [] frames,
+                                final @NotNull String name) throws IOException {
+        final byte[] data = new byte[reader.getHeader().getFrameDataSize()];
+        for (int i = 0; i < frames.length; i++) {
+            assertEquals(i, reader.getFrameId(), name);
+            assertTrue(reader.readFrame(data), "%s, frame %d".formatted(name, i));
+            assertArrayEquals(frames[i], data, "%s, frame %d".formatted(name, i));
+        }
+        assertFalse(reader.readFrame(data), name);
+        assertEquals(frames.length, reader.getFrameId(), name);
+    }
+
+    private static void checkSeeks(final @NotNull VideoReader reader, final byte @NotNull [] @NotNull [] frames,
+                                   final int keyframeInterval, final @NotNull String name) throws IOException {
+        final byte[] data = new byte[reader.getHeader().getFrameDataSize()];
+        for (final long target : seekTargets(keyframeInterval)) {
+            final String seekName = "%s, seek to %d".formatted(name, target);
+            reader.seek(target, data);
+            assertEquals(Math.max(0, Math.min(target, FRAMES)), reader.getFrameId(), seekName);
+            if (target >= FRAMES) {
+                assertFalse(reader.readFrame(data), seekName);
+                continue;
+            }
+            // the frame after the target as well, so the delta frames are applied to the right frame
+            for (int i = (int) Math.max(0, target); i < Math.min(FRAMES, target + 2); i++) {
+                assertTrue(reader.readFrame(data), seekName);
+                assertArrayEquals(frames[i], data, "%s, frame %d".formatted(seekName, i));
+            }
+        }
+    }
+
+    private static long @NotNull [] seekTargets(final int keyframeInterval) {
+        return new long[]{
+                0, 1, keyframeInterval - 1, keyframeInterval, keyframeInterval + 1, 2L * keyframeInterval + 3,
+                FRAMES / 2, FRAMES - 1, FRAMES, FRAMES + 100, 3, -5, keyframeInterval + 1
+        };
+    }
+
+    /**
+     * Creates frames with only a few changed cells between most frames, so both keyframes and delta frames are written.
+     */
+    private static byte @NotNull [] @NotNull [] frames(final @NotNull Random random, final int cellSize) {
+        final int cells = WIDTH * HEIGHT;
+        final byte[][] frames = new byte[FRAMES][];
+        for (int i = 0; i < FRAMES; i++) {
+            final byte[] frame = new byte[cells * cellSize];
+            if (i % 10 == 0) { // every cell changed, a keyframe is smaller than a delta frame
+                random.nextBytes(frame);
+            } else {
+                System.arraycopy(frames[i - 1], 0, frame, 0, frame.length);
+                final int changes = i % 7 == 0 ? 0 : random.nextInt(cells / 4) + 1; // sometimes no change at all
+                for (int change = 0; change < changes; change++) {
+                    final int cell = random.nextInt(cells);
+                    for (int b = 0; b < cellSize; b++)
+                        frame[cell * cellSize + b] = (byte) random.nextInt(256);
+                }
+            }
+            frames[i] = frame;
+        }
+        return frames;
+    }
+
+    private static @NotNull String @NotNull [] bakedFrames(final @NotNull Random random) {
+        final String[] frames = new String[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            final StringBuilder frame = new StringBuilder();
+            final int length = i % 9 == 0 ? 0 : random.nextInt(300);
+            for (int c = 0; c < length; c++)
+                frame.append((char) (' ' + random.nextInt(95)));
+            frames[i] = frame.toString();
+        }
+        return frames;
+    }
+
+    private static byte @NotNull [] versionless(final boolean trueColor, final byte @NotNull [] @NotNull [] frames) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.write(FPS);
+        out.writeInt(WIDTH);
+        out.writeInt(HEIGHT);
+        out.writeBoolean(trueColor);
+        for (final byte[] frame : frames)
+            out.write(frame);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rewrites the header of version 3 video data to an older version, the frames are the same.
+     */
+    private static byte @NotNull [] downgrade(final byte @NotNull [] data, final int version) {
+        final int removed = VideoHeader.VERSION - version; // the compression and the baked color target bytes
+        final byte[] downgraded = new byte[data.length - removed];
+        System.arraycopy(data, 0, downgraded, 0, HEADER_SIZE - removed);
+        System.arraycopy(data, HEADER_SIZE, downgraded, HEADER_SIZE - removed, data.length - HEADER_SIZE);
+        downgraded[1 + VideoHeader.MAGIC.length] = (byte) version;
+        return downgraded;
+    }
+
+    private static @NotNull VideoIndex downgrade(final @NotNull VideoIndex index, final int version) {
+        final long[] offsets = new long[index.getKeyframeCount()];
+        for (int i = 0; i < offsets.length; i++)
+            offsets[i] = index.getKeyframeOffset(i) - (VideoHeader.VERSION - version);
+        return new VideoIndex(index.getFrameCount(), offsets);
+    }
+
+    private static void withMappedReader(final byte @NotNull [] data, final @Nullable VideoIndex index,
+                                         final @NotNull ReaderCheck check) throws IOException {
+        final Path file = Files.createTempFile("conquade-test", Conquade.FILE_EXTENSION);
+        try {
+            Files.write(file, data);
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 final VideoReader reader = new VideoReader(new MappedInputStream(channel, 0, data.length), index)) {
+                check.check(reader);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReaderCheck {
+        void check(final @NotNull VideoReader reader) throws IOException;
+    }
+}